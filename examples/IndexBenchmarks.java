@@ -6,6 +6,7 @@ import java.util.regex.Pattern;
 
 import dfh.cli.Cli;
 import dfh.cli.rules.Range;
+import dfh.grammar.AhoCorasickIndexer;
 import dfh.grammar.CharacterIndexer;
 import dfh.grammar.Grammar;
 import dfh.grammar.GrammarException;
@@ -80,6 +81,7 @@ public class IndexBenchmarks {
 		test3();
 		test4();
 		longStringTest();
+		manyLiteralsTest();
 	}
 
 	private static void test1() throws IOException {
@@ -90,9 +92,10 @@ public class IndexBenchmarks {
 		CharacterIndexer p = new CharacterIndexer('a');
 		StringIndexer q = new StringIndexer("a");
 		PatternIndexer r = new PatternIndexer(Pattern.compile("a"));
+		AhoCorasickIndexer t = new AhoCorasickIndexer("a");
 		String s = "qewrqewrqewraqwreqewr";
 		Grammar g = new Grammar(rules);
-		iterate(p, q, r, g, s, false);
+		iterate(g, s, false, p, q, r, t);
 	}
 
 	private static void test2() {
@@ -109,8 +112,8 @@ public class IndexBenchmarks {
 		};
 		String s = "foo bar";
 		Grammar g = new Grammar(rules);
-		iterate(null, null, new PatternIndexer(Pattern.compile("foo|quux")), g,
-				s, false);
+		iterate(g, s, false, new PatternIndexer(Pattern.compile("foo|quux")),
+				new AhoCorasickIndexer("foo", "quux"));
 	}
 
 	private static void test3() {
@@ -125,9 +128,10 @@ public class IndexBenchmarks {
 		CharacterIndexer p = new CharacterIndexer('a');
 		StringIndexer q = new StringIndexer("a");
 		PatternIndexer r = new PatternIndexer(Pattern.compile("a"));
+		AhoCorasickIndexer t = new AhoCorasickIndexer("a");
 		String s = "aabb";
 		Grammar g = new Grammar(rules);
-		iterate(p, q, r, g, s, false);
+		iterate(g, s, false, p, q, r, t);
 	}
 
 	private static void longStringTest() throws IOException {
@@ -152,23 +156,61 @@ public class IndexBenchmarks {
 		}
 		String s = b.toString();
 		Grammar g = new Grammar(rules);
-		iterate(null, null, new PatternIndexer(p), g, s, false);
+		iterate(g, s, false, new PatternIndexer(p), new AhoCorasickIndexer(
+				"cat", "dog", "monkey"));
 	}
 
-	private static void iterate(CharacterIndexer p, StringIndexer q,
-			PatternIndexer r, Grammar g, String s, boolean allMatches) {
+	/**
+	 * A grammar that can begin with any of several dozen literals, which is
+	 * the case Aho-Corasick indexing is meant for.
+	 */
+	private static void manyLiteralsTest() {
+		String[] words = { "alpha", "bravo", "charlie", "delta", "echo",
+				"foxtrot", "golf", "hotel", "india", "juliet", "kilo", "lima",
+				"mike", "november", "oscar", "papa", "quebec", "romeo",
+				"sierra", "tango", "uniform", "victor", "whiskey", "xray",
+				"yankee", "zulu", "zero", "one", "two", "three", "four",
+				"five", "six", "seven", "eight", "nine" };
+		StringBuilder rule = new StringBuilder("<ROOT> = [");
+		StringBuilder re = new StringBuilder();
+		for (int i = 0; i < words.length; i++) {
+			if (i > 0) {
+				rule.append(" |");
+				re.append('|');
+			}
+			rule.append(" '").append(words[i]).append('\'');
+			re.append(words[i]);
+		}
+		rule.append(" ] /\\s++/ /\\d++/");
+		String[] rules = { rule.toString() };
+		StringBuilder b = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			b.append("the quick brown fox jumps over the lazy dog ");
+			if (i % 10 == 0)
+				b.append(words[i % words.length]).append(' ').append(i)
+						.append(' ');
+		}
+		String s = b.toString();
+		Grammar g = new Grammar(rules);
+		iterate(g, s, true, new PatternIndexer(Pattern.compile(re.toString())),
+				new AhoCorasickIndexer(words));
+	}
+
+	private static void iterate(Grammar g, String s, boolean allMatches,
+			Indexer... indexers) {
 		Options opt = new Options();
 		opt.fatMemory(true);
 		opt.longestMatch(false);
+		// compare against trying every offset
+		opt.autoIndex(false);
 		System.out.println("=============\n");
 		System.out.println("string: "
 				+ (s.length() > 60 ? s.substring(0, 60) + "... (length "
 						+ s.length() + ")" : s));
 		System.out.println();
 		System.out.println(g.describe());
-		iterate(g, s, allMatches, opt, p);
-		iterate(g, s, allMatches, opt, q);
-		iterate(g, s, allMatches, opt, r);
+		for (Indexer i : indexers)
+			iterate(g, s, allMatches, opt, i);
 	}
 
 	private static void iterate(Grammar g, String s, boolean allMatches,
@@ -248,6 +290,7 @@ public class IndexBenchmarks {
 		Pattern p = Pattern.compile("[ab]");
 		String s = "qewrqewrqewraqwreqewr";
 		Grammar g = new Grammar(rules);
-		iterate(null, null, new PatternIndexer(p), g, s, false);
+		iterate(g, s, false, new PatternIndexer(p), new AhoCorasickIndexer("a",
+				"b"));
 	}
 }
@@ -0,0 +1,277 @@
+/*
+ * dfh.grammar -- a recursive descent parser library for Java
+ *
+ * Copyright (C) 2012 David F. Houghton
+ *
+ * This software is licensed under the LGPL. Please see accompanying NOTICE file
+ * and lgpl.txt.
+ */
+package dfh.grammar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * {@link Indexer} that finds every offset beginning any of a set of strings
+ * in a single pass over the sequence using the Aho-Corasick algorithm. This
+ * is the indexer of choice when a grammar can only begin with one of several
+ * literals; a {@link PatternIndexer} with an alternation must restart the
+ * regular expression after every hit.
+ * <p>
+ * Transitions on ASCII characters are looked up in a table; others follow
+ * failure links.
+ *
+ * @author David F. Houghton - Oct 19, 2026
+ *
+ */
+public class AhoCorasickIndexer implements Indexer {
+	private static final long serialVersionUID = 1L;
+	/**
+	 * Characters in the dense transition table.
+	 */
+	private static final int ASCII = 128;
+
+	private final String[] clues;
+	private final boolean caseInsensitive;
+	/**
+	 * Whether some clue is the empty string, so every offset is a start
+	 * offset.
+	 */
+	private final boolean everywhere;
+	/**
+	 * Length of the longest clue.
+	 */
+	private final int longest;
+	/**
+	 * Transitions on ASCII characters: {@code ascii[state * ASCII + c]}.
+	 */
+	private final int[] ascii;
+	/**
+	 * Sorted non-ASCII characters with trie edges out of each state.
+	 */
+	private final char[][] keys;
+	/**
+	 * Targets of the edges in {@link #keys}.
+	 */
+	private final int[][] targets;
+	private final int[] fail;
+	/**
+	 * Lengths of the clues ending at each state, or {@code null}.
+	 */
+	private final int[][] lengths;
+
+	/**
+	 * Generates a case-sensitive indexer.
+	 *
+	 * @param clues
+	 *            strings any of which may begin a match
+	 */
+	public AhoCorasickIndexer(String... clues) {
+		this(Arrays.asList(clues), false);
+	}
+
+	/**
+	 * @param clues
+	 *            strings any of which may begin a match
+	 * @param caseInsensitive
+	 *            whether to ignore case as
+	 *            {@link String#equalsIgnoreCase(String)} does
+	 */
+	public AhoCorasickIndexer(Collection<String> clues,
+			boolean caseInsensitive) {
+		if (clues.isEmpty())
+			throw new GrammarException(
+					"AhoCorasickIndexer requires at least one string");
+		this.clues = new TreeSet<String>(clues).toArray(new String[0]);
+		this.caseInsensitive = caseInsensitive;
+		// build the trie
+		List<Map<Character, Integer>> edges =
+				new ArrayList<Map<Character, Integer>>();
+		List<List<Integer>> ends = new ArrayList<List<Integer>>();
+		edges.add(new HashMap<Character, Integer>());
+		ends.add(null);
+		boolean everywhere = false;
+		int longest = 0;
+		for (String clue : this.clues) {
+			if (clue.length() == 0)
+				everywhere = true;
+			longest = Math.max(longest, clue.length());
+			int state = 0;
+			for (int i = 0; i < clue.length(); i++) {
+				Character c = fold(clue.charAt(i));
+				Integer next = edges.get(state).get(c);
+				if (next == null) {
+					next = edges.size();
+					edges.add(new HashMap<Character, Integer>());
+					ends.add(null);
+					edges.get(state).put(c, next);
+				}
+				state = next;
+			}
+			if (ends.get(state) == null)
+				ends.set(state, new ArrayList<Integer>());
+			ends.get(state).add(clue.length());
+		}
+		this.everywhere = everywhere;
+		this.longest = longest;
+		int states = edges.size();
+		fail = new int[states];
+		ascii = new int[states * ASCII];
+		keys = new char[states][];
+		targets = new int[states][];
+		lengths = new int[states][];
+		// breadth-first: failure links, inherited outputs, and the table
+		LinkedList<Integer> queue = new LinkedList<Integer>();
+		queue.add(0);
+		while (!queue.isEmpty()) {
+			int state = queue.removeFirst();
+			List<Integer> out = ends.get(state);
+			int[] inherited = state == 0 ? null : lengths[fail[state]];
+			if (out != null || inherited != null) {
+				int n = (out == null ? 0 : out.size())
+						+ (inherited == null ? 0 : inherited.length);
+				int[] ls = new int[n];
+				int i = 0;
+				if (out != null) {
+					for (Integer l : out)
+						ls[i++] = l;
+				}
+				if (inherited != null)
+					System.arraycopy(inherited, 0, ls, i, inherited.length);
+				lengths[state] = ls;
+			}
+			Map<Character, Integer> children = edges.get(state);
+			for (int c = 0; c < ASCII; c++) {
+				Integer child = children.get((char) c);
+				int fallback = state == 0 ? 0
+						: ascii[fail[state] * ASCII + c];
+				ascii[state * ASCII + c] = child == null ? fallback : child;
+			}
+			List<Character> wide = new ArrayList<Character>();
+			for (Map.Entry<Character, Integer> e : children.entrySet()) {
+				char c = e.getKey();
+				int child = e.getValue();
+				fail[child] = state == 0 ? 0 : step(fail[state], c);
+				queue.add(child);
+				if (c >= ASCII)
+					wide.add(c);
+			}
+			if (!wide.isEmpty()) {
+				char[] ks = new char[wide.size()];
+				for (int i = 0; i < ks.length; i++)
+					ks[i] = wide.get(i);
+				Arrays.sort(ks);
+				int[] ts = new int[ks.length];
+				for (int i = 0; i < ks.length; i++)
+					ts[i] = children.get(ks[i]);
+				keys[state] = ks;
+				targets[state] = ts;
+			}
+		}
+	}
+
+	private char fold(char c) {
+		return caseInsensitive ? Character.toLowerCase(Character
+				.toUpperCase(c)) : c;
+	}
+
+	/**
+	 * @return the state reached from the given state on the given character,
+	 *         which must already be folded
+	 */
+	private int step(int state, char c) {
+		if (c < ASCII)
+			return ascii[state * ASCII + c];
+		while (true) {
+			char[] ks = keys[state];
+			if (ks != null) {
+				int i = Arrays.binarySearch(ks, c);
+				if (i >= 0)
+					return targets[state][i];
+			}
+			if (state == 0)
+				return 0;
+			state = fail[state];
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder b = new StringBuilder(
+				AhoCorasickIndexer.class.getSimpleName());
+		b.append('(');
+		for (int i = 0; i < clues.length; i++) {
+			if (i > 0)
+				b.append(", ");
+			b.append(clues[i]);
+		}
+		b.append(')');
+		if (caseInsensitive)
+			b.append('i');
+		return b.toString();
+	}
+
+	/**
+	 * Matches are found in order of their ends, so start offsets are held in
+	 * a window as wide as the longest clue until no later match can begin
+	 * before them.
+	 *
+	 * @see dfh.grammar.Indexer#index(java.lang.CharSequence, int, int)
+	 */
+	@Override
+	public Offsets index(final CharSequence s, final int start, final int end) {
+		if (everywhere) {
+			return new Offsets() {
+				private int i = start;
+
+				@Override
+				public int next() {
+					return i <= end ? i++ : -1;
+				}
+			};
+		}
+		return new Offsets() {
+			private final boolean[] pending = new boolean[longest];
+			/**
+			 * Next offset to scan.
+			 */
+			private int i = start;
+			/**
+			 * Least offset not yet returned or rejected.
+			 */
+			private int emitted = start;
+			private int state = 0;
+
+			@Override
+			public int next() {
+				while (true) {
+					// offsets that no unscanned character can begin a clue at
+					int settled = i < end ? i - longest + 1 : i;
+					while (emitted < settled) {
+						int slot = emitted % longest;
+						if (pending[slot]) {
+							pending[slot] = false;
+							return emitted++;
+						}
+						emitted++;
+					}
+					if (i >= end)
+						return -1;
+					char c = s.charAt(i++);
+					state = step(state, caseInsensitive ? fold(c) : c);
+					int[] ls = lengths[state];
+					if (ls != null) {
+						for (int l : ls)
+							pending[(i - l) % longest] = true;
+					}
+				}
+			}
+		};
+	}
+}
@@ -10,9 +10,11 @@ package dfh.grammar;
 
 import java.io.Serializable;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 
 /**
@@ -35,16 +37,29 @@ public class AlternationRule extends Rule implements Serializable,
 	private class AlternationMatcher extends NonterminalMatcher {
 		int index = 0;
 		Matcher mostRecent = null;
+		/**
+		 * Whether only the alternate at {@link #index} is to be tried.
+		 */
+		private final boolean only;
 
 		public AlternationMatcher(Integer offset,
 				Map<Integer, CachedMatch>[] cache, Matcher master) {
 			super(offset, cache, AlternationRule.this, master);
+			only = false;
+		}
+
+		AlternationMatcher(Integer offset, Map<Integer, CachedMatch>[] cache,
+				Matcher master, int alternate) {
+			super(offset, cache, AlternationRule.this, master);
+			index = alternate;
+			only = true;
 		}
 
 		@Override
 		protected void fetchNext() {
 			if (mostRecent == null) {
 				mostRecent = alternates[index].matcher(offset, cache, this);
+				delegateFloor(mostRecent);
 			}
 			Match child = null;
 			boolean test;
@@ -57,9 +72,10 @@ public class AlternationRule extends Rule implements Serializable,
 						break OUTER;
 					test = mostRecent.mightHaveNext();
 				}
-				if (++index == alternates.length)
+				if (only || ++index == alternates.length)
 					break;
 				mostRecent = alternates[index].matcher(offset, cache, this);
+				delegateFloor(mostRecent);
 			}
 			if (child == null) {
 				done = true;
@@ -95,6 +111,30 @@ public class AlternationRule extends Rule implements Serializable,
 		return new AlternationMatcher(offset, cache, master);
 	}
 
+	/**
+	 * Creates a {@link Matcher} which tries only one of the alternates. Its
+	 * matches are those {@link #matcher(Integer, Map[], Matcher)} would
+	 * produce from that alternate. The matcher will only be used under a
+	 * {@link Floor}, so it won't record a mismatch in the offset cache.
+	 * 
+	 * @param offset
+	 * @param cache
+	 * @param master
+	 * @param alternate
+	 *            index of the alternate to try
+	 * @param floor
+	 *            least end offset of interest
+	 * @return {@link Matcher} restricted to the given alternate
+	 */
+	NonterminalMatcher matcher(Integer offset,
+			Map<Integer, CachedMatch>[] cache, Matcher master, int alternate,
+			Floor floor) {
+		NonterminalMatcher m = new AlternationMatcher(offset, cache, master,
+				alternate);
+		m.setFloor(floor);
+		return m;
+	}
+
 	@Override
 	protected String uniqueId() {
 		StringBuilder b = new StringBuilder();
@@ -280,6 +320,60 @@ public class AlternationRule extends Rule implements Serializable,
 		}
 	}
 
+	@Override
+	protected int[] width(Map<String, int[]> cache) {
+		int[] w = cachedWidth(cache);
+		if (w != null)
+			return w;
+		int min = UNBOUNDED, max = 0;
+		for (Rule r : alternates) {
+			w = r.width(cache);
+			min = Math.min(min, w[0]);
+			max = Math.max(max, w[1]);
+		}
+		return setWidth(cache, min, max);
+	}
+
+	@Override
+	StartSet startSet(Map<String, StartSet> cache) {
+		if (cache.containsKey(uid()))
+			return cache.get(uid()); // null if we are recursing
+		cache.put(uid(), null);
+		StartSet s = new StartSet();
+		for (Rule r : alternates) {
+			StartSet s2 = r.startSet(cache);
+			if (s2 == null)
+				return null;
+			s.add(s2);
+		}
+		cache.put(uid(), s);
+		return s;
+	}
+
+	@Override
+	Map<String, RequiredLiteral> required(
+			Map<String, Map<String, RequiredLiteral>> cache) {
+		Map<String, RequiredLiteral> rl = cache.get(uid());
+		if (rl == null) {
+			if (cache.containsKey(uid()))
+				return Collections.emptyMap(); // recursion
+			cache.put(uid(), null);
+			// only literals required by every alternate are required here
+			for (Rule r : alternates) {
+				Map<String, RequiredLiteral> rl2 = r.required(cache);
+				if (rl == null)
+					rl = new HashMap<String, RequiredLiteral>(rl2);
+				else {
+					rl.keySet().retainAll(rl2.keySet());
+					for (Entry<String, RequiredLiteral> e : rl.entrySet())
+						e.setValue(e.getValue().or(rl2.get(e.getKey())));
+				}
+			}
+			cache.put(uid(), rl);
+		}
+		return rl;
+	}
+
 	// @Override
 	// public Set<String> conditionNames() {
 	// if (c != null)
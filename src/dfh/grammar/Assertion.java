@@ -9,6 +9,7 @@
 package dfh.grammar;
 
 import java.io.Serializable;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 
@@ -33,22 +34,34 @@ public class Assertion extends Rule implements Serializable, NonterminalRule {
 		private final Map<Integer, CachedMatch>[] cache;
 		private final Map<Integer, CachedMatch> subCache;
 		private final boolean backward;
+		/**
+		 * whether this is a backward assertion evaluated forward via
+		 * {@link Assertion#behind}
+		 */
+		private final boolean lookbehind;
 
 		private AssertionMatcher(Integer offset,
 				Map<Integer, CachedMatch>[] cache, Matcher master) {
 			super(offset, master);
 			this.cache = cache;
 			this.subCache = cache[rule().cacheIndex];
-			backward = false;
+			backward = lookbehind = false;
 		}
 
 		public AssertionMatcher(Integer offset,
 				Map<Integer, CachedMatch>[] cache, Matcher master,
 				GlobalState gs, boolean b) {
+			this(offset, cache, master, gs, b, false);
+		}
+
+		private AssertionMatcher(Integer offset,
+				Map<Integer, CachedMatch>[] cache, Matcher master,
+				GlobalState gs, boolean b, boolean lookbehind) {
 			super(offset, master, gs);
 			this.cache = cache;
 			this.subCache = cache[rule().cacheIndex];
 			backward = b;
+			this.lookbehind = lookbehind;
 		}
 
 		private boolean fresh = true;
@@ -59,10 +72,9 @@ public class Assertion extends Rule implements Serializable, NonterminalRule {
 				Assertion.this.matchTrace(this);
 			if (fresh) {
 				fresh = false;
-				// TODO: should we check cache here at all?
 				CachedMatch cm = subCache.get(offset);
 				if (cm == null) {
-					Match n = r.matcher(
+					Match n = lookbehind ? lookBehind() : r.matcher(
 							backward ? options.rcs.translate(offset) + 1
 									: offset, cache, this).match();
 					if (positive) {
@@ -86,9 +98,7 @@ public class Assertion extends Rule implements Serializable, NonterminalRule {
 							Assertion.this.matchTrace(this, null);
 						return null;
 					}
-					// cm = n == null ? CachedMatch.MISMATCH :
-					// CachedMatch.MATCH;
-					// subCache.put(offset, cm);
+					subCache.put(offset, new CachedMatch(n));
 					if (options.debug)
 						Assertion.this.matchTrace(this, n);
 					return register(n);
@@ -96,19 +106,8 @@ public class Assertion extends Rule implements Serializable, NonterminalRule {
 					if (options.debug)
 						Assertion.this.matchTrace(this, null);
 					return null;
-				} else if (positive) {
-					Match n;
-					if (backward) {
-						n = r.matcher(0, cache, this).match();
-						n = reverse(n);
-					} else {
-						n = r.matcher(offset, cache, this).match();
-					}
-					Match next = new Match(Assertion.this, offset, offset);
-					next.setChildren(new Match[] { n });
-					return register(next);
 				} else {
-					Match n = new Match(Assertion.this, offset, offset);
+					Match n = copy(cm.m);
 					if (options.debug)
 						Assertion.this.matchTrace(this, n);
 					return register(n);
@@ -119,6 +118,71 @@ public class Assertion extends Rule implements Serializable, NonterminalRule {
 			return null;
 		}
 
+		/**
+		 * Tries {@link Assertion#behind} at every offset from which it might
+		 * reach this matcher's offset, from the furthest to the nearest,
+		 * returning the first match that ends here.
+		 * 
+		 * @return match in terms of the reversed rules, or {@code null}
+		 */
+		private Match lookBehind() {
+			int start = Math.max(options.start, offset - behind.maxWidth);
+			for (int i = start, lim = offset - behind.minWidth; i <= lim; i++) {
+				Matcher m = behind.matcher(i, cache, this);
+				Match n;
+				while ((n = m.match()) != null) {
+					if (n.end() == offset)
+						return relabel(n);
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * Converts a match of {@link Assertion#behind} into the match tree
+		 * the reversed rules would have produced.
+		 * 
+		 * @param n
+		 * @return equivalent match of reversed rules
+		 */
+		private Match relabel(Match n) {
+			Rule ru = reversals.get(n.rule().uid());
+			Match[] children = n.children();
+			// redundant repetitions are dropped during reversal
+			if (ru == null)
+				return relabel(children[0]);
+			Match m = new Match(ru, n.start(), n.end());
+			if (children != null) {
+				Match[] copies = new Match[children.length];
+				for (int i = 0; i < children.length; i++)
+					copies[i] = relabel(children[i]);
+				m.setChildren(copies);
+			}
+			return m;
+		}
+
+		/**
+		 * Copies the non-terminal nodes of a cached match tree so that it can
+		 * be used in more than one larger match. Terminal nodes are copied by
+		 * {@link Match#done(CharSequence)}.
+		 * 
+		 * @param n
+		 * @return copy of n
+		 */
+		private Match copy(Match n) {
+			if (n.isTerminal())
+				return n;
+			Match m = new Match(n.rule(), n.start(), n.end());
+			Match[] children = n.children();
+			if (children != null) {
+				Match[] copies = new Match[children.length];
+				for (int i = 0; i < children.length; i++)
+					copies[i] = copy(children[i]);
+				m.setChildren(copies);
+			}
+			return m;
+		}
+
 		/**
 		 * Swaps all members of match tree and adjusts offsets
 		 * 
@@ -169,6 +233,18 @@ public class Assertion extends Rule implements Serializable, NonterminalRule {
 	protected final boolean positive;
 	protected final boolean forward;
 	private String subDescription;
+	/**
+	 * For a backward assertion whose rule has a bounded width and means the
+	 * same thing read in either direction, the unreversed rule, which can be
+	 * matched forward without the cost of reversing the character sequence.
+	 */
+	Rule behind;
+	/**
+	 * Map from the unique ids of the rules making up {@link #behind} to their
+	 * reversed counterparts. Matches are looked up by id because a cached
+	 * match may belong to another rule sharing the same cache.
+	 */
+	private Map<String, Rule> reversals;
 
 	public Assertion(Label label, Rule r, boolean positive, boolean forward) {
 		super(label);
@@ -180,6 +256,11 @@ public class Assertion extends Rule implements Serializable, NonterminalRule {
 	@Override
 	public Matcher matcher(Integer offset, Map<Integer, CachedMatch>[] cache,
 			Matcher master) {
+		if (behind != null && !master.options.isReversed) {
+			GlobalState gs = master.options.study ? master.options.unstudy()
+					: master.options;
+			return new AssertionMatcher(offset, cache, master, gs, false, true);
+		}
 		if (forward) {
 			if (!master.options.study)
 				return new AssertionMatcher(offset, cache, master);
@@ -293,6 +374,8 @@ public class Assertion extends Rule implements Serializable, NonterminalRule {
 			}
 			cacheIndex = i;
 			r.setCacheIndex(uids);
+			if (behind != null)
+				behind.setCacheIndex(uids);
 		}
 	}
 
@@ -302,6 +385,8 @@ public class Assertion extends Rule implements Serializable, NonterminalRule {
 			return currentMax;
 		visited.add(this);
 		int max = Math.max(cacheIndex, currentMax);
+		if (behind != null)
+			max = behind.maxCacheIndex(max, visited);
 		return r.maxCacheIndex(max, visited);
 	}
 
@@ -345,6 +430,73 @@ public class Assertion extends Rule implements Serializable, NonterminalRule {
 		return true;
 	}
 
+	@Override
+	protected int[] width(Map<String, int[]> cache) {
+		int[] w = cachedWidth(cache);
+		if (w != null)
+			return w;
+		r.width(cache);
+		return setWidth(cache, 0, 0);
+	}
+
+	@Override
+	StartSet startSet(Map<String, StartSet> cache) {
+		return new StartSet();
+	}
+
+	/**
+	 * Arranges for a backward assertion to be evaluated by matching its
+	 * unreversed rule forward, if this is possible. This requires that the
+	 * rule have a maximum width and that it consist only of literals,
+	 * single-character patterns without anchors or lookarounds, and sequences,
+	 * alternations, and non-possessive repetitions of these. If the assertion
+	 * is positive, every part of the rule must also have a fixed width.
+	 * Otherwise we fall back to matching the reversed rule against the
+	 * reversed sequence.
+	 */
+	void findForwardRule() {
+		if (forward || unreversed != null || r.unreversed == null
+				|| behind != null)
+			return;
+		Rule candidate = r.unreversed;
+		Set<Rule> rules = candidate.subRules(false);
+		for (Rule sr : rules)
+			sr.setUid();
+		candidate.width(new HashMap<String, int[]>());
+		if (candidate.maxWidth == UNBOUNDED)
+			return;
+		for (Rule sr : rules) {
+			if (!forwardable(sr))
+				return;
+			// a match of variable width might be parsed differently in
+			// different directions, and a positive assertion must report the
+			// parse reversal would have found
+			if (positive && sr.minWidth != sr.maxWidth)
+				return;
+		}
+		candidate.fixAlternation();
+		reversals = new HashMap<String, Rule>(rules.size() * 2);
+		for (Rule sr : r.subRules(false)) {
+			if (sr.unreversed != null)
+				reversals.put(sr.unreversed.uid(), sr);
+		}
+		behind = candidate;
+	}
+
+	private static boolean forwardable(Rule r) {
+		if (r instanceof LiteralRule || r instanceof SequenceRule
+				|| r instanceof AlternationRule)
+			return true;
+		if (r instanceof LeafRule) {
+			LeafRule lr = (LeafRule) r;
+			return !lr.directional && lr.minWidth == lr.maxWidth
+					&& lr.maxWidth <= 1;
+		}
+		if (r instanceof RepetitionRule)
+			return ((RepetitionRule) r).repetition.t != Repetition.Type.possessive;
+		return false;
+	}
+
 	@Override
 	public Rule deepCopy(Label l, String nameBase, Map<String, Rule> cycleMap,
 			Set<String> knownLabels, Set<String> knownConditions) {
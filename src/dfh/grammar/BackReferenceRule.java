@@ -54,7 +54,7 @@ public class BackReferenceRule extends Rule implements Serializable,
 				BackReferenceRule.this.matchTrace(this);
 			if (fresh) {
 				fresh = false;
-				Match m = ((SequenceMatcher) master).matched.get(index), n = null;
+				Match m = ((SequenceMatcher) master).matched[index], n = null;
 				int delta = m.end() - m.start();
 				if (delta == 0) {
 					// zero-width matches always match
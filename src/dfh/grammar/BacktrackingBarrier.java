@@ -119,4 +119,14 @@ public class BacktrackingBarrier extends Rule implements Serializable,
 		cache.put(uid(), true);
 		return true;
 	}
+
+	@Override
+	protected int[] width(Map<String, int[]> cache) {
+		return setWidth(cache, 0, 0);
+	}
+
+	@Override
+	StartSet startSet(Map<String, StartSet> cache) {
+		return new StartSet();
+	}
 }
@@ -0,0 +1,76 @@
+/*
+ * dfh.grammar -- a recursive descent parser library for Java
+ *
+ * Copyright (C) 2012 David F. Houghton
+ *
+ * This software is licensed under the LGPL. Please see accompanying NOTICE file
+ * and lgpl.txt.
+ */
+package dfh.grammar;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * The matches found in one of the sequences handed to
+ * {@link Grammar#findAll(Iterable, Options, Executor, boolean)}, together with
+ * the sequence and its position among the inputs.
+ *
+ * @author David F. Houghton - Oct 19, 2026
+ *
+ */
+public class BatchResult {
+	private final int index;
+	private final CharSequence input;
+	private final List<Match> matches;
+	private final Throwable error;
+
+	BatchResult(int index, CharSequence input, List<Match> matches,
+			Throwable error) {
+		this.index = index;
+		this.input = input;
+		this.matches = matches;
+		this.error = error;
+	}
+
+	/**
+	 * @return position of the sequence among the inputs, counting from 0
+	 */
+	public int index() {
+		return index;
+	}
+
+	/**
+	 * @return the sequence searched
+	 */
+	public CharSequence input() {
+		return input;
+	}
+
+	/**
+	 * @return the matches found in the sequence, in the order
+	 *         {@link Grammar#find(CharSequence, Options)} would find them
+	 * @throws GrammarException
+	 *             or whatever else was thrown while searching the sequence
+	 */
+	public List<Match> matches() {
+		if (error instanceof RuntimeException)
+			throw (RuntimeException) error;
+		if (error instanceof Error)
+			throw (Error) error;
+		return matches;
+	}
+
+	/**
+	 * @return what was thrown while searching the sequence, if anything
+	 */
+	public Throwable error() {
+		return error;
+	}
+
+	@Override
+	public String toString() {
+		return index + ": "
+				+ (error == null ? matches.size() + " matches" : error);
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ * dfh.grammar -- a recursive descent parser library for Java
+ *
+ * Copyright (C) 2012 David F. Houghton
+ *
+ * This software is licensed under the LGPL. Please see accompanying NOTICE file
+ * and lgpl.txt.
+ */
+package dfh.grammar;
+
+import java.util.BitSet;
+
+/**
+ * {@link Indexer} that finds every offset holding any of a set of characters.
+ * Membership is tested against a bitmap covering every {@code char}.
+ *
+ * @author David F. Houghton - Oct 19, 2026
+ *
+ */
+public class CharacterClassIndexer implements Indexer {
+	private static final long serialVersionUID = 1L;
+	private final long[] bits = new long[(Character.MAX_VALUE + 1) >> 6];
+
+	/**
+	 * @param members
+	 *            set whose set bits are the characters sought; bits beyond
+	 *            {@link Character#MAX_VALUE} are ignored
+	 */
+	public CharacterClassIndexer(BitSet members) {
+		for (int c = members.nextSetBit(0); c >= 0
+				&& c <= Character.MAX_VALUE; c = members.nextSetBit(c + 1))
+			bits[c >> 6] |= 1L << c;
+	}
+
+	/**
+	 * @param members
+	 *            the characters sought
+	 */
+	public CharacterClassIndexer(char... members) {
+		for (char c : members)
+			bits[c >> 6] |= 1L << c;
+	}
+
+	private boolean member(char c) {
+		return (bits[c >> 6] & 1L << c) != 0;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder b = new StringBuilder(
+				CharacterClassIndexer.class.getSimpleName());
+		b.append("([");
+		for (int c = 0; c <= Character.MAX_VALUE; c++) {
+			if (member((char) c)) {
+				int e = c;
+				while (e < Character.MAX_VALUE && member((char) (e + 1)))
+					e++;
+				append(b, (char) c);
+				if (e > c) {
+					if (e > c + 1)
+						b.append('-');
+					append(b, (char) e);
+				}
+				c = e;
+			}
+		}
+		b.append("])");
+		return b.toString();
+	}
+
+	/**
+	 * Appends a character as it would appear in a regular expression character
+	 * class.
+	 */
+	private static void append(StringBuilder b, char c) {
+		if (c < ' ' || c > '~')
+			b.append(String.format("\\u%04X", (int) c));
+		else {
+			if ("\\[]^-&".indexOf(c) > -1)
+				b.append('\\');
+			b.append(c);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see dfh.grammar.Indexer#index(java.lang.CharSequence, int, int)
+	 */
+	@Override
+	public Offsets index(final CharSequence s, final int start, final int end) {
+		return new Offsets() {
+			private int i = start;
+
+			@Override
+			public int next() {
+				while (i < end) {
+					if (member(s.charAt(i++)))
+						return i - 1;
+				}
+				return -1;
+			}
+		};
+	}
+}
@@ -8,9 +8,6 @@
  */
 package dfh.grammar;
 
-import java.util.LinkedList;
-import java.util.List;
-
 /**
  * {@link Indexer} that uses {@link String#indexOf(int, int)}.
  * <p>
@@ -37,15 +34,37 @@ public class CharacterIndexer implements Indexer {
 	 * @see dfh.grammar.Indexer#index(java.lang.CharSequence, int, int)
 	 */
 	@Override
-	public List<Integer> index(CharSequence s, int start, int end) {
-		List<Integer> list = new LinkedList<Integer>();
-		String st = s.toString();
-		int index;
-		while ((index = st.indexOf(clue, start)) > -1) {
-			list.add(index);
-			start = index + 1;
+	public Offsets index(final CharSequence s, final int start, final int end) {
+		// indexOf would scan past a region ending short of the string
+		if (s instanceof String && end == s.length()) {
+			final String st = (String) s;
+			return new Offsets() {
+				private int i = start;
+
+				@Override
+				public int next() {
+					int index = i < end ? st.indexOf(clue, i) : -1;
+					if (index == -1) {
+						i = end;
+						return -1;
+					}
+					i = index + 1;
+					return index;
+				}
+			};
 		}
-		return list;
+		return new Offsets() {
+			private int i = start;
+
+			@Override
+			public int next() {
+				while (i < end) {
+					if (s.charAt(i++) == clue)
+						return i - 1;
+				}
+				return -1;
+			}
+		};
 	}
 
 }
@@ -0,0 +1,370 @@
+/*
+ * dfh.grammar -- a recursive descent parser library for Java
+ *
+ * Copyright (C) 2012 David F. Houghton
+ *
+ * This software is licensed under the LGPL. Please see accompanying NOTICE file
+ * and lgpl.txt.
+ */
+package dfh.grammar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A {@link LogicalCondition} tree flattened into a jump table. Each
+ * instruction tests a single leaf condition and names the instruction to
+ * proceed to if it passes and if it fails; the special targets
+ * {@link #TRUE} and {@link #FALSE} end evaluation. Negation costs nothing --
+ * it merely swaps the targets -- and conjunction and disjunction short-circuit
+ * as they do in the tree. Nested operators of the same kind are merged and
+ * {@link WrappedCondition wrappers} are stripped.
+ * <p>
+ * Where every condition under a conjunction or disjunction is
+ * {@link Condition#pure() pure}, and hence free to be evaluated in any order,
+ * the evaluator counts how often each leaf passes and samples how long it
+ * takes. Periodically it reorders such operands so that those most likely to
+ * decide the question cheaply are tested first. The counters are updated
+ * without synchronization; a lost update merely skews the statistics. The
+ * reordering stops once the grammar has been used for a while.
+ *
+ * @author David F. Houghton - Oct 19, 2026
+ *
+ */
+class CompiledCondition extends Condition {
+	private static final long serialVersionUID = 1L;
+	/**
+	 * Jump target signifying success.
+	 */
+	private static final int TRUE = -1;
+	/**
+	 * Jump target signifying failure.
+	 */
+	private static final int FALSE = -2;
+	/**
+	 * Time one call in this many of each leaf condition.
+	 */
+	private static final int SAMPLE_MASK = 0xF;
+	/**
+	 * Evaluations before the first reordering; the interval doubles after
+	 * each.
+	 */
+	private static final int FIRST_REORDER = 1 << 8;
+	/**
+	 * Evaluations after which we stop gathering statistics.
+	 */
+	private static final int LAST_REORDER = 1 << 16;
+
+	private enum Op {
+		LEAF, AND, OR, XOR, NOT
+	}
+
+	/**
+	 * A leaf condition with its statistics.
+	 */
+	private static class Leaf {
+		final Condition c;
+		long calls, passes, samples, nanos;
+
+		Leaf(Condition c) {
+			this.c = c;
+		}
+
+		boolean test(Match n, Matcher m, CharSequence s) {
+			boolean b;
+			if ((calls++ & SAMPLE_MASK) == 0) {
+				long t = System.nanoTime();
+				b = c.passes(n, m, s);
+				nanos += System.nanoTime() - t;
+				samples++;
+			} else
+				b = c.passes(n, m, s);
+			if (b)
+				passes++;
+			return b;
+		}
+	}
+
+	/**
+	 * Node in the simplified expression tree from which programs are compiled.
+	 */
+	private static class Node {
+		final Op op;
+		final Leaf leaf;
+		final Node[] children;
+		/**
+		 * Whether the children of this conjunction or disjunction may be
+		 * evaluated in any order.
+		 */
+		final boolean reorderable;
+		/**
+		 * Estimated cost of evaluation and probability of passing; only
+		 * meaningful during reordering.
+		 */
+		double cost, p;
+
+		Node(Leaf leaf) {
+			op = Op.LEAF;
+			this.leaf = leaf;
+			children = null;
+			reorderable = false;
+		}
+
+		Node(Op op, Node[] children) {
+			this.op = op;
+			leaf = null;
+			this.children = children;
+			boolean b = op == Op.AND || op == Op.OR;
+			for (Node n : children)
+				b &= n.pure();
+			reorderable = b;
+		}
+
+		boolean pure() {
+			if (op == Op.LEAF)
+				return leaf.c.pure();
+			for (Node n : children) {
+				if (!n.pure())
+					return false;
+			}
+			return true;
+		}
+
+		boolean adaptive() {
+			if (reorderable)
+				return true;
+			if (op != Op.LEAF) {
+				for (Node n : children) {
+					if (n.adaptive())
+						return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * The jump table. Immutable once built so it can be swapped in while
+	 * other threads are evaluating the previous one.
+	 */
+	private static class Program {
+		final Leaf[] tests;
+		final int[] ifTrue, ifFalse;
+		final int entry;
+		final boolean measure;
+
+		Program(Leaf[] tests, int[] ifTrue, int[] ifFalse, int entry,
+				boolean measure) {
+			this.tests = tests;
+			this.ifTrue = ifTrue;
+			this.ifFalse = ifFalse;
+			this.entry = entry;
+			this.measure = measure;
+		}
+	}
+
+	/**
+	 * Orders operands of a conjunction by the cost of each failure and of a
+	 * disjunction by the cost of each success.
+	 */
+	private static final Comparator<Node> AND_ORDER = new Comparator<Node>() {
+		@Override
+		public int compare(Node a, Node b) {
+			return Double.compare(a.cost / (1 - a.p), b.cost / (1 - b.p));
+		}
+	};
+	private static final Comparator<Node> OR_ORDER = new Comparator<Node>() {
+		@Override
+		public int compare(Node a, Node b) {
+			return Double.compare(a.cost / a.p, b.cost / b.p);
+		}
+	};
+
+	final Condition source;
+	private final Node root;
+	private final boolean pure;
+	private volatile Program program;
+	private int evaluations = 0;
+	private int nextReorder;
+
+	CompiledCondition(Condition source) {
+		this.source = source;
+		name = source.getName();
+		root = node(source);
+		pure = root.pure();
+		boolean adaptive = root.adaptive();
+		nextReorder = adaptive ? FIRST_REORDER : Integer.MAX_VALUE;
+		program = compile(adaptive);
+	}
+
+	private static Node node(Condition c) {
+		while (c instanceof WrappedCondition)
+			c = ((WrappedCondition) c).inner();
+		Op op;
+		if (c instanceof ConjunctionCondition)
+			op = Op.AND;
+		else if (c instanceof DisjunctionCondition)
+			op = Op.OR;
+		else if (c instanceof XORCondition)
+			op = Op.XOR;
+		else if (c instanceof NegationCondition)
+			op = Op.NOT;
+		else
+			return new Node(new Leaf(c));
+		List<Node> children = new ArrayList<Node>();
+		for (Condition sc : ((LogicalCondition) c).subconditions) {
+			Node n = node(sc);
+			if (n.op == op && (op == Op.AND || op == Op.OR))
+				children.addAll(Arrays.asList(n.children));
+			else
+				children.add(n);
+		}
+		return new Node(op, children.toArray(new Node[children.size()]));
+	}
+
+	@Override
+	public boolean passes(Match n, Matcher m, CharSequence s) {
+		Program p = program;
+		int pc = p.entry;
+		if (p.measure) {
+			while (pc >= 0)
+				pc = p.tests[pc].test(n, m, s) ? p.ifTrue[pc] : p.ifFalse[pc];
+			if (++evaluations >= nextReorder)
+				reorder();
+		} else {
+			while (pc >= 0)
+				pc = p.tests[pc].c.passes(n, m, s) ? p.ifTrue[pc]
+						: p.ifFalse[pc];
+		}
+		return pc == TRUE;
+	}
+
+	@Override
+	public boolean pure() {
+		return pure;
+	}
+
+	@Override
+	protected String describe(boolean showAll) {
+		return source.describe(showAll);
+	}
+
+	/**
+	 * Sorts reorderable operands by their observed statistics and swaps in a
+	 * new program.
+	 */
+	private synchronized void reorder() {
+		if (evaluations < nextReorder)
+			return;
+		boolean last = nextReorder >= LAST_REORDER;
+		nextReorder = last ? Integer.MAX_VALUE : nextReorder * 2;
+		estimate(root);
+		program = compile(!last);
+	}
+
+	/**
+	 * Computes the expected cost and probability of success of the given
+	 * node, ordering its descendants along the way.
+	 */
+	private static void estimate(Node n) {
+		switch (n.op) {
+		case LEAF: {
+			Leaf l = n.leaf;
+			n.p = (l.passes + 1.0) / (l.calls + 2.0);
+			n.cost = l.samples == 0 ? 1 : 1 + (double) l.nanos / l.samples;
+			return;
+		}
+		case NOT:
+			estimate(n.children[0]);
+			n.cost = n.children[0].cost;
+			n.p = 1 - n.children[0].p;
+			return;
+		default:
+			for (Node c : n.children)
+				estimate(c);
+		}
+		if (n.reorderable)
+			Arrays.sort(n.children, n.op == Op.AND ? AND_ORDER : OR_ORDER);
+		double cost = 0, reach = 1;
+		switch (n.op) {
+		case AND:
+			for (Node c : n.children) {
+				cost += reach * c.cost;
+				reach *= c.p;
+			}
+			n.p = reach;
+			break;
+		case OR:
+			for (Node c : n.children) {
+				cost += reach * c.cost;
+				reach *= 1 - c.p;
+			}
+			n.p = 1 - reach;
+			break;
+		default:
+			// probabilities of having seen no and exactly one success
+			double none = 1, one = 0;
+			for (Node c : n.children) {
+				cost += c.cost;
+				one = one * (1 - c.p) + none * c.p;
+				none *= 1 - c.p;
+			}
+			n.p = one;
+		}
+		n.cost = cost;
+	}
+
+	private Program compile(boolean measure) {
+		List<Leaf> tests = new ArrayList<Leaf>();
+		List<int[]> jumps = new ArrayList<int[]>();
+		int entry = compile(root, TRUE, FALSE, tests, jumps);
+		int[] ifTrue = new int[jumps.size()], ifFalse = new int[jumps.size()];
+		for (int i = 0; i < ifTrue.length; i++) {
+			ifTrue[i] = jumps.get(i)[0];
+			ifFalse[i] = jumps.get(i)[1];
+		}
+		return new Program(tests.toArray(new Leaf[tests.size()]), ifTrue,
+				ifFalse, entry, measure);
+	}
+
+	/**
+	 * Emits the instructions for a node given its continuations, working
+	 * backwards from the last operand so every target is known when it is
+	 * needed.
+	 *
+	 * @return index of the node's first instruction
+	 */
+	private static int compile(Node n, int t, int f, List<Leaf> tests,
+			List<int[]> jumps) {
+		int next;
+		switch (n.op) {
+		case LEAF:
+			tests.add(n.leaf);
+			jumps.add(new int[] { t, f });
+			return tests.size() - 1;
+		case NOT:
+			return compile(n.children[0], f, t, tests, jumps);
+		case AND:
+			next = t;
+			for (int i = n.children.length - 1; i >= 0; i--)
+				next = compile(n.children[i], next, f, tests, jumps);
+			return next;
+		case OR:
+			next = f;
+			for (int i = n.children.length - 1; i >= 0; i--)
+				next = compile(n.children[i], t, next, tests, jumps);
+			return next;
+		default:
+			// entry points for having seen no and exactly one success
+			int none = f, one = t;
+			for (int i = n.children.length - 1; i >= 0; i--) {
+				int none2 = compile(n.children[i], one, none, tests, jumps);
+				one = compile(n.children[i], f, one, tests, jumps);
+				none = none2;
+			}
+			return none;
+		}
+	}
+}
@@ -733,7 +733,7 @@ final class Compiler {
 			UplevelBackReferenceFragment ubf = (UplevelBackReferenceFragment) rf;
 			Label l = new Label(Type.implicit, rf.toString());
 			UpLevelBackReferenceRule ulbr = new UpLevelBackReferenceRule(l,
-					ubf.reference, ubf.level);
+					ubf.reference);
 			Rule r = ulbr;
 			if (ubf.rep.redundant())
 				return r;
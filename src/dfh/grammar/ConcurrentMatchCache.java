@@ -0,0 +1,109 @@
+/*
+ * dfh.grammar -- a recursive descent parser library for Java
+ *
+ * Copyright (C) 2012 David F. Houghton
+ *
+ * This software is licensed under the LGPL. Please see accompanying NOTICE file
+ * and lgpl.txt.
+ */
+package dfh.grammar;
+
+import java.util.AbstractMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A thread-safe counterpart of {@link MatchCache} that lets the threads
+ * searching different parts of a sequence share what they learn about
+ * terminal rules. Offsets are grouped into pages of {@value #PAGE_SIZE}; a page
+ * is allocated, by compare-and-set, only when some offset in it is first
+ * cached, so memory is proportional to the part of the sequence actually
+ * examined rather than to its length. Reads and writes take no lock.
+ * <p>
+ * As with {@link MatchCache}, only {@link #get(Object)} and
+ * {@link #put(Integer, CachedMatch)} are optimized. The views returned by
+ * {@link #entrySet()} and the like are snapshots.
+ *
+ * @author David F. Houghton - Oct 19, 2026
+ *
+ */
+class ConcurrentMatchCache extends AbstractMap<Integer, CachedMatch> {
+	private static final int PAGE_BITS = 12;
+	static final int PAGE_SIZE = 1 << PAGE_BITS;
+	private static final int PAGE_MASK = PAGE_SIZE - 1;
+	private final AtomicReferenceArray<AtomicReferenceArray<CachedMatch>> pages;
+
+	/**
+	 * @param size
+	 *            greatest offset to be cached
+	 */
+	ConcurrentMatchCache(int size) {
+		pages = new AtomicReferenceArray<AtomicReferenceArray<CachedMatch>>(
+				(size >> PAGE_BITS) + 1);
+	}
+
+	/**
+	 * @param offset
+	 *            offset to be cached
+	 * @return the page holding the offset, allocating it if necessary
+	 */
+	private AtomicReferenceArray<CachedMatch> page(int offset) {
+		int i = offset >> PAGE_BITS;
+		AtomicReferenceArray<CachedMatch> page = pages.get(i);
+		if (page == null) {
+			pages.compareAndSet(i, null, new AtomicReferenceArray<CachedMatch>(
+					PAGE_SIZE));
+			page = pages.get(i);
+		}
+		return page;
+	}
+
+	@Override
+	public CachedMatch get(Object key) {
+		int i = (Integer) key;
+		AtomicReferenceArray<CachedMatch> page = pages.get(i >> PAGE_BITS);
+		return page == null ? null : page.get(i & PAGE_MASK);
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return get(key) != null;
+	}
+
+	@Override
+	public CachedMatch put(Integer key, CachedMatch value) {
+		int i = key;
+		return page(i).getAndSet(i & PAGE_MASK, value);
+	}
+
+	@Override
+	public CachedMatch remove(Object key) {
+		int i = (Integer) key;
+		AtomicReferenceArray<CachedMatch> page = pages.get(i >> PAGE_BITS);
+		return page == null ? null : page.getAndSet(i & PAGE_MASK, null);
+	}
+
+	@Override
+	public void clear() {
+		for (int i = 0; i < pages.length(); i++)
+			pages.set(i, null);
+	}
+
+	@Override
+	public Set<Entry<Integer, CachedMatch>> entrySet() {
+		Map<Integer, CachedMatch> snapshot = new LinkedHashMap<Integer, CachedMatch>();
+		for (int i = 0; i < pages.length(); i++) {
+			AtomicReferenceArray<CachedMatch> page = pages.get(i);
+			if (page == null)
+				continue;
+			for (int j = 0; j < PAGE_SIZE; j++) {
+				CachedMatch cm = page.get(j);
+				if (cm != null)
+					snapshot.put((i << PAGE_BITS) + j, cm);
+			}
+		}
+		return snapshot.entrySet();
+	}
+}
@@ -85,10 +85,10 @@ public abstract class Condition implements Serializable {
 	 * {@link #passes(Match, Matcher, CharSequence)} for caveats.
 	 * <p>
 	 * Unless overridden, this method will merely delegate its job to
-	 * {@link #passes(CharSequence)}, ignoring the {@link Match} argument. The
-	 * {@link CharSequence} passed will have its order corrected via
-	 * {@link #subsequence(Match, CharSequence)}, so in a backwards assertion
-	 * {@link #passes(CharSequence)} will not see a reversed sequence.
+	 * {@link #passes(CharSequence, int, int)}, ignoring the {@link Match}
+	 * argument. The span passed will have its order corrected, so in a
+	 * backwards assertion {@link #passes(CharSequence, int, int)} will not see
+	 * a reversed sequence.
 	 * 
 	 * @param n
 	 *            {@link Match} being tested
@@ -97,7 +97,34 @@ public abstract class Condition implements Serializable {
 	 * @return whether the {@link Match} meets the condition
 	 */
 	public boolean passes(Match n, CharSequence s) {
-		return passes(subsequence(n, s));
+		if (s instanceof ReversedCharSequence
+				&& ((ReversedCharSequence) s).isReversed()) {
+			ReversedCharSequence rcs = (ReversedCharSequence) s;
+			return passes(rcs.underlyingSequence(),
+					rcs.translate(n.end()) + 1, rcs.translate(n.start()) + 1);
+		}
+		return passes(s, n.start(), n.end());
+	}
+
+	/**
+	 * Whether the character span matched meets the given condition. Override
+	 * this rather than {@link #passes(CharSequence)} to examine the characters
+	 * matched without creating a subsequence for them.
+	 * <p>
+	 * Unless overridden, this method will merely delegate its job to
+	 * {@link #passes(CharSequence)}. See
+	 * {@link #passes(Match, Matcher, CharSequence)} for caveats.
+	 * 
+	 * @param s
+	 *            {@link CharSequence} containing the span, in the correct order
+	 * @param start
+	 *            offset of the first character of the span
+	 * @param end
+	 *            offset after the last character of the span
+	 * @return whether the span meets the condition
+	 */
+	public boolean passes(CharSequence s, int start, int end) {
+		return passes(s.subSequence(start, end));
 	}
 
 	/**
@@ -223,6 +250,24 @@ public abstract class Condition implements Serializable {
 		return set;
 	}
 
+	/**
+	 * Returns whether the condition's verdict depends only on the characters
+	 * matched -- not on the structure of the {@link Match}, the
+	 * {@link Matcher}, or any mutable state. The verdicts of pure conditions
+	 * are remembered by span for the duration of a match, so however often
+	 * backtracking produces the same span the condition is only tested once.
+	 * Expensive conditions such as dictionary lookups should override this to
+	 * return {@code true} if they can.
+	 * <p>
+	 * Unless overridden, this method returns {@code false}.
+	 * 
+	 * @return whether the condition's verdict depends only on the characters
+	 *         matched
+	 */
+	public boolean pure() {
+		return false;
+	}
+
 	/**
 	 * Returns whether the condition will be displayed by
 	 * {@link Grammar#describe()}.
@@ -1,6 +1,7 @@
 package dfh.grammar;
 
 import java.io.Serializable;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
 
@@ -26,6 +27,12 @@ public class ConditionalRule extends Rule implements NonterminalRule,
 			m = r.matcher(offset, cache, master);
 		}
 
+		@Override
+		void setFloor(Floor floor) {
+			super.setFloor(floor);
+			delegateFloor(m);
+		}
+
 		@Override
 		protected void fetchNext() {
 			next = null;
@@ -33,11 +40,10 @@ public class ConditionalRule extends Rule implements NonterminalRule,
 				Match n = m.match();
 				if (n == null)
 					break;
-				Match child = new Match(ConditionalRule.this, n.start(),
-						n.end());
-				Match[] children = { n };
-				child.setChildren(children);
-				boolean passes = c.passes(child, this, s);
+				Match child = wrap(n);
+				Condition t = test == null ? c : test;
+				boolean passes = t.pure() ? options.session.passes(t, child,
+						this) : t.passes(child, this, s);
 				if (options.debug)
 					logCondition(this, c, passes);
 				if (passes) {
@@ -49,22 +55,123 @@ public class ConditionalRule extends Rule implements NonterminalRule,
 
 	}
 
+	/**
+	 * Matcher used when the condition is {@link #fused} with a terminal rule.
+	 * Like the terminal's own matcher it produces at most one match, and it
+	 * caches the terminal's match, or {@link CachedMatch#MISMATCH} if it fails
+	 * the condition, so the condition is tested once per offset.
+	 */
+	private class FusedMatcher extends Matcher {
+		private final Map<Integer, CachedMatch>[] cache;
+		private boolean fresh = true;
+
+		protected FusedMatcher(Integer offset,
+				Map<Integer, CachedMatch>[] cache, Matcher master) {
+			super(offset, master);
+			this.cache = cache;
+		}
+
+		@Override
+		public Match match() {
+			if (options.debug)
+				ConditionalRule.this.matchTrace(this);
+			Match n = null;
+			if (fresh) {
+				fresh = false;
+				Map<Integer, CachedMatch> subCache = cache[cacheIndex];
+				CachedMatch cm = subCache.get(offset);
+				if (cm == null) {
+					Match tm = r.matcher(offset, cache, this).match();
+					if (tm == null)
+						cm = CachedMatch.MISMATCH;
+					else {
+						Condition t = test == null ? c : test;
+						boolean passes = t.passes(wrap(tm), this, s);
+						if (options.debug)
+							logCondition(this, c, passes);
+						cm = passes ? new CachedMatch(tm) : CachedMatch.MISMATCH;
+					}
+					subCache.put(offset, cm);
+				}
+				if (cm != CachedMatch.MISMATCH)
+					n = wrap(cm.m);
+			}
+			if (options.debug)
+				ConditionalRule.this.matchTrace(this, n);
+			return register(n);
+		}
+
+		@Override
+		protected boolean mightHaveNext() {
+			return fresh;
+		}
+
+		@Override
+		protected Rule rule() {
+			return ConditionalRule.this;
+		}
+
+		@Override
+		public String toString() {
+			return "M:" + ConditionalRule.this.label().id;
+		}
+	}
+
 	protected final Rule r;
 	protected Condition c;
+	/**
+	 * The condition actually evaluated; a {@link CompiledCondition} if
+	 * {@link #c} is a {@link LogicalCondition}. Set when the grammar is
+	 * completed.
+	 */
+	transient Condition test;
+	/**
+	 * Whether {@link #r} is a terminal rule and the condition is
+	 * {@link Condition#pure() pure}, so the condition can be tested as the
+	 * terminal is matched or studied and its verdict cached with the terminal
+	 * match.
+	 */
+	boolean fused = false;
 
 	public ConditionalRule(Label label, Rule r, Condition c) {
 		super(label);
 		this.r = r;
 		this.c = c;
+		// the condition takes the definition's label from its body
+		if (r instanceof SequenceRule && label.t == Label.Type.explicit)
+			((SequenceRule) r).definition = true;
+	}
+
+	/**
+	 * Flattens logical conditions into a {@link CompiledCondition} and fuses
+	 * pure conditions with terminal rules.
+	 */
+	void compile() {
+		test = c instanceof LogicalCondition ? new CompiledCondition(c) : c;
+		fused = r.isTerminal() && test.pure();
 	}
 
 	@Override
 	public Matcher matcher(Integer offset, Map<Integer, CachedMatch>[] cache,
 			Matcher master) {
+		if (fused)
+			return new FusedMatcher(offset, cache, master);
 		return new ConditionalMatcher(offset, cache, ConditionalRule.this,
 				master);
 	}
 
+	/**
+	 * @param n
+	 *            match of {@link #r}
+	 * @return match of this rule wrapping it
+	 */
+	private Match wrap(Match n) {
+		Match child = new Match(this, n.start(), n.end());
+		Match[] children = { n };
+		child.setChildren(children);
+		return child;
+	}
+
 	@Override
 	protected String uniqueId() {
 		StringBuilder b = new StringBuilder(r.uniqueId());
@@ -83,11 +190,51 @@ public class ConditionalRule extends Rule implements NonterminalRule,
 		return r.description(bool);
 	}
 
+	/**
+	 * Studies the terminal rule and tests the condition at every offset it
+	 * matches if the condition is {@link #fused}; otherwise does nothing.
+	 */
 	@Override
 	public Set<Integer> study(CharSequence s,
 			Map<Integer, CachedMatch>[] cache, GlobalState options) {
-		// non-terminal rules don't study
-		return null;
+		if (!fused)
+			// non-terminal rules don't study
+			return null;
+		Map<Integer, CachedMatch> subCache = cache[cacheIndex];
+		Set<Integer> startOffsets = new OffsetSet(options.start);
+		if (subCache.isEmpty()) {
+			Map<Integer, CachedMatch> terminalCache = cache[r.cacheIndex];
+			Condition t = test == null ? c : test;
+			for (Integer i : r.study(s, cache, options)) {
+				CachedMatch cm = terminalCache.get(i);
+				if (cm == null)
+					// not cached by the terminal; leave it for matching
+					startOffsets.add(i);
+				else if (cm != CachedMatch.MISMATCH) {
+					if (t.passes(wrap(cm.m), null, s)) {
+						subCache.put(i, new CachedMatch(cm.m));
+						startOffsets.add(i);
+					} else
+						subCache.put(i, CachedMatch.MISMATCH);
+				}
+			}
+		} else {
+			for (Map.Entry<Integer, CachedMatch> e : subCache.entrySet()) {
+				if (e.getValue() != CachedMatch.MISMATCH)
+					startOffsets.add(e.getKey());
+			}
+		}
+		return startOffsets;
+	}
+
+	@Override
+	protected void initialRules(Set<String> initialRules) {
+		if (!initialRules.contains(uid())) {
+			initialRules.add(uid());
+			// a fused rule is studied in place of its terminal
+			if (!fused)
+				r.initialRules(initialRules);
+		}
 	}
 
 	@Override
@@ -107,6 +254,39 @@ public class ConditionalRule extends Rule implements NonterminalRule,
 		}
 	}
 
+	@Override
+	protected int[] width(Map<String, int[]> cache) {
+		int[] w = cachedWidth(cache);
+		if (w != null)
+			return w;
+		w = r.width(cache);
+		return setWidth(cache, w[0], w[1]);
+	}
+
+	@Override
+	StartSet startSet(Map<String, StartSet> cache) {
+		if (cache.containsKey(uid()))
+			return cache.get(uid()); // null if we are recursing
+		cache.put(uid(), null);
+		StartSet s = r.startSet(cache);
+		cache.put(uid(), s);
+		return s;
+	}
+
+	@Override
+	Map<String, RequiredLiteral> required(
+			Map<String, Map<String, RequiredLiteral>> cache) {
+		Map<String, RequiredLiteral> rl = cache.get(uid());
+		if (rl == null) {
+			if (cache.containsKey(uid()))
+				return Collections.emptyMap(); // recursion
+			cache.put(uid(), null);
+			rl = r.required(cache);
+			cache.put(uid(), rl);
+		}
+		return rl;
+	}
+
 	@Override
 	public Rule deepCopy(Label l, String nameBase, Map<String, Rule> cycleMap,
 			Set<String> knownLabels, Set<String> knownConditions) {
@@ -9,6 +9,7 @@
 package dfh.grammar;
 
 import java.io.Serializable;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
 
@@ -156,6 +157,39 @@ public class CyclicRule extends Rule implements Serializable, NonterminalRule {
 		}
 	}
 
+	@Override
+	protected int[] width(Map<String, int[]> cache) {
+		int[] w = cachedWidth(cache);
+		if (w != null)
+			return w;
+		w = r.width(cache);
+		return setWidth(cache, w[0], w[1]);
+	}
+
+	@Override
+	StartSet startSet(Map<String, StartSet> cache) {
+		if (cache.containsKey(uid()))
+			return cache.get(uid()); // null if we are recursing
+		cache.put(uid(), null);
+		StartSet s = r.startSet(cache);
+		cache.put(uid(), s);
+		return s;
+	}
+
+	@Override
+	Map<String, RequiredLiteral> required(
+			Map<String, Map<String, RequiredLiteral>> cache) {
+		Map<String, RequiredLiteral> rl = cache.get(uid());
+		if (rl == null) {
+			if (cache.containsKey(uid()))
+				return Collections.emptyMap(); // recursion
+			cache.put(uid(), null);
+			rl = r.required(cache);
+			cache.put(uid(), rl);
+		}
+		return rl;
+	}
+
 	@Override
 	public Rule deepCopy(Label l, String nameBase, Map<String, Rule> cycleMap,
 			Set<String> knownLabels, Set<String> knownConditions) {
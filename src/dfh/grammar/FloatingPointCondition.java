@@ -23,12 +23,99 @@ public abstract class FloatingPointCondition extends Condition implements
 		Serializable {
 	private static final long serialVersionUID = 8L;
 
+	/**
+	 * Exact powers of ten representable as doubles.
+	 */
+	private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4,
+			1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15,
+			1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+	/**
+	 * The most significant digits for which the mantissa is exact.
+	 */
+	private static final int MAX_DIGITS = 15;
+
+	/**
+	 * Parses the span as {@link Double#parseDouble(String)} would and tests
+	 * the result with {@link #passes(double)}. Plain decimal numbers with at
+	 * most 15 significant digits and a small exponent are converted without
+	 * creating a string; since both the mantissa and the power of ten are
+	 * exact, a single multiplication or division rounds correctly. Anything
+	 * else is handed to {@link Double#parseDouble(String)}. Spans that aren't
+	 * numbers fail.
+	 */
 	@Override
-	public boolean passes(Match n, Matcher m, CharSequence s) {
-		CharSequence ss = Condition.subsequence(n, s);
+	public boolean passes(CharSequence s, int start, int end) {
+		int i = start;
+		boolean negative = false;
+		if (i < end) {
+			char c = s.charAt(i);
+			negative = c == '-';
+			if (negative || c == '+')
+				i++;
+		}
+		long mantissa = 0;
+		int digits = 0, exponent = 0;
+		boolean simple = true, sawDigit = false, sawPoint = false;
+		for (; i < end; i++) {
+			char c = s.charAt(i);
+			if (c >= '0' && c <= '9') {
+				sawDigit = true;
+				if (mantissa == 0 && c == '0') {
+					if (sawPoint)
+						exponent--;
+					continue;
+				}
+				if (++digits > MAX_DIGITS) {
+					simple = false;
+					break;
+				}
+				mantissa = mantissa * 10 + c - '0';
+				if (sawPoint)
+					exponent--;
+			} else if (c == '.' && !sawPoint)
+				sawPoint = true;
+			else
+				break;
+		}
+		if (simple && sawDigit && i < end) {
+			// exponent
+			char c = s.charAt(i);
+			if (c == 'e' || c == 'E') {
+				boolean negativeExponent = false;
+				if (++i < end) {
+					c = s.charAt(i);
+					negativeExponent = c == '-';
+					if (negativeExponent || c == '+')
+						i++;
+				}
+				int e = 0, j = i;
+				for (; i < end && e < 1000; i++) {
+					c = s.charAt(i);
+					if (c < '0' || c > '9')
+						break;
+					e = e * 10 + c - '0';
+				}
+				if (i == j)
+					simple = false;
+				exponent += negativeExponent ? -e : e;
+			}
+		}
+		if (simple && sawDigit && i == end) {
+			double d = mantissa;
+			if (mantissa == 0 || exponent == 0) {
+				return passes(negative ? -d : d);
+			} else if (exponent > 0
+					&& exponent < POWERS_OF_TEN.length) {
+				d *= POWERS_OF_TEN[exponent];
+				return passes(negative ? -d : d);
+			} else if (exponent < 0 && -exponent < POWERS_OF_TEN.length) {
+				d /= POWERS_OF_TEN[-exponent];
+				return passes(negative ? -d : d);
+			}
+		}
 		try {
-			double d = Double.parseDouble(ss.toString());
-			return passes(d);
+			return passes(Double.parseDouble(s.subSequence(start, end)
+					.toString()));
 		} catch (NumberFormatException e) {
 			return false;
 		}
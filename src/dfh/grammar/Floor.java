@@ -0,0 +1,34 @@
+/*
+ * dfh.grammar -- a recursive descent parser library for Java
+ *
+ * Copyright (C) 2012 David F. Houghton
+ *
+ * This software is licensed under the LGPL. Please see accompanying NOTICE file
+ * and lgpl.txt.
+ */
+package dfh.grammar;
+
+/**
+ * The least end offset of any match still of interest. A {@link Floor} is
+ * handed down from a {@link NonterminalMatcher} to the matchers responsible
+ * for the end of its matches -- the last element of a sequence, every
+ * alternate of an alternation -- so that they can abandon partial matches
+ * that cannot reach it. It is mutable so that whoever created it can raise it
+ * as better matches are found.
+ * <p>
+ * A matcher working under a floor sees only some of the matches of its rule,
+ * so it must not record a mismatch in the offset cache.
+ *
+ * @author David F. Houghton - Oct 19, 2026
+ *
+ */
+class Floor {
+	/**
+	 * Matches ending before this offset may be pruned.
+	 */
+	int end;
+
+	Floor(int end) {
+		this.end = end;
+	}
+}
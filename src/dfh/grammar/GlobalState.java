@@ -27,23 +27,48 @@ public class GlobalState {
 	public final PrintStream trace;
 	public final boolean debug;
 	public final int maxDepth;
+	/**
+	 * Number of threads a search may use; see {@link Options#PARALLELISM}.
+	 */
+	public final int parallelism;
 	public final CharSequence cs;
 	public final ReversedCharSequence rcs;
 	public final boolean isReversed;
 	public final int length;
 	public final Indexer indexer;
+	/**
+	 * Scratch space shared by this state and all states derived from it.
+	 */
+	final Session session;
+
+	/**
+	 * Constructor called in {@link Grammar} only.
+	 * 
+	 * @param o
+	 * @param indexer
+	 *            the {@link Indexer} to use, which may be derived from the
+	 *            grammar rather than taken from the {@link Options}
+	 */
+	GlobalState(CharSequence cs, Options o, Indexer indexer) {
+		this(cs, o, indexer, new Session());
+	}
 
 	/**
 	 * Constructor called in {@link Grammar} only.
 	 * 
 	 * @param o
-	 * @param containsCycles
+	 * @param indexer
+	 *            the {@link Indexer} to use
+	 * @param session
+	 *            scratch space, which may be reused from an earlier match
+	 *            against some other sequence
 	 */
-	GlobalState(CharSequence cs, Options o) {
+	GlobalState(CharSequence cs, Options o, Indexer indexer, Session session) {
 		this(cs, new ReversedCharSequence(cs), false, o.allowOverlap, o.start,
 				o.end == -1 || o.end > cs.length() ? cs.length() : o.end,
-				o.maxRecursionDepth, o.trace, o.study, o.keepRightmost,
-				o.indexer);
+				o.maxRecursionDepth, o.parallelism, o.trace, o.study,
+				o.keepRightmost, indexer, session);
+		session.begin(o, cs);
 	}
 
 	/**
@@ -59,6 +84,7 @@ public class GlobalState {
 		start = gs.start;
 		end = gs.end;
 		maxDepth = gs.maxDepth;
+		parallelism = gs.parallelism;
 		trace = gs.trace;
 		keepRightmost = gs.keepRightmost;
 		debug = gs.debug;
@@ -66,6 +92,7 @@ public class GlobalState {
 		indexed = study = false;
 		length = gs.length;
 		indexer = null;
+		session = gs.session;
 	}
 
 	/**
@@ -82,6 +109,7 @@ public class GlobalState {
 		start = gs.start;
 		end = gs.end;
 		maxDepth = gs.maxDepth;
+		parallelism = gs.parallelism;
 		trace = gs.trace;
 		keepRightmost = gs.keepRightmost;
 		debug = gs.debug;
@@ -89,6 +117,7 @@ public class GlobalState {
 		indexed = study = false;
 		length = gs.length;
 		indexer = null;
+		session = gs.session;
 	}
 
 	/**
@@ -107,8 +136,8 @@ public class GlobalState {
 
 	private GlobalState(CharSequence cs, ReversedCharSequence rcs,
 			boolean isReversed, boolean allowOverlap, int start, int end,
-			int maxDepth, PrintStream trace, boolean study,
-			boolean keepRightmost, Indexer indexer) {
+			int maxDepth, int parallelism, PrintStream trace, boolean study,
+			boolean keepRightmost, Indexer indexer, Session session) {
 		this.cs = cs;
 		this.rcs = rcs;
 		this.isReversed = isReversed;
@@ -116,6 +145,7 @@ public class GlobalState {
 		this.start = start;
 		this.end = end;
 		this.maxDepth = maxDepth;
+		this.parallelism = parallelism;
 		this.trace = trace;
 		this.keepRightmost = keepRightmost;
 		this.debug = trace != null;
@@ -124,6 +154,7 @@ public class GlobalState {
 		this.length = end - start;
 		this.indexer = indexer;
 		this.indexed = study || indexer != null;
+		this.session = session;
 	}
 
 	/**
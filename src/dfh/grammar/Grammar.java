@@ -19,6 +19,7 @@ import java.io.Reader;
 import java.io.Serializable;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -28,8 +29,19 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.Queue;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.BooleanSupplier;
 import java.util.regex.Pattern;
 
 import dfh.grammar.Label.Type;
@@ -146,34 +158,284 @@ public class Grammar implements Serializable {
 		}
 	}
 
+	/**
+	 * Wrapper that serializes access to a {@link GrammarMatcher}, so that a
+	 * {@link Matcher} may be shared among threads; see
+	 * {@link Options#synchronize()}.
+	 * 
+	 * @author David F. Houghton - Oct 19, 2026
+	 * 
+	 */
+	private class SynchronizedMatcher extends GrammarMatcher {
+		private final GrammarMatcher m;
+
+		SynchronizedMatcher(GrammarMatcher m) {
+			super(m.options);
+			this.m = m;
+		}
+
+		@Override
+		public synchronized Match match() {
+			return m.match();
+		}
+
+		@Override
+		protected synchronized boolean mightHaveNext() {
+			return m.mightHaveNext();
+		}
+
+		@Override
+		public synchronized Match rightmostMatch() {
+			return m.rightmostMatch();
+		}
+
+		@Override
+		protected String name() {
+			return m.name();
+		}
+	}
+
+	/**
+	 * @param opt
+	 *            matching options
+	 * @param m
+	 *            unsynchronized matcher
+	 * @return the matcher, wrapped in a {@link SynchronizedMatcher} unless the
+	 *         options say it will be confined to a single thread
+	 */
+	private Matcher synchronize(Options opt, GrammarMatcher m) {
+		return opt.synchronize ? new SynchronizedMatcher(m) : m;
+	}
+
 	/**
 	 * {@link Matcher} wrapper to implement LTM.
 	 * <p>
+	 * Rather than collecting every match at the offset and keeping the widest,
+	 * we place a {@link Floor} under the root matcher and raise it as matches
+	 * are found, so any partial match that cannot beat the best so far is
+	 * abandoned. If the root rule is an alternation, its alternates are tried
+	 * in order of decreasing reachable end offset, so the floor rises as
+	 * quickly as possible, and alternates that cannot reach the floor are
+	 * never tried at all.
+	 * <p>
 	 * <b>Creation date:</b> Apr 13, 2011
 	 * 
 	 * @author David Houghton
 	 * 
 	 */
-	private static class LTMMatcher {
+	private class LTMMatcher {
+		/**
+		 * How deeply {@link #maxEnd(Rule, int, Matcher, int)} may recurse
+		 * before settling for a static bound.
+		 */
+		private static final int MAX_PROBE_DEPTH = 16;
 		private final LinkedList<Match> matches = new LinkedList<Match>();
+		private final Map<Integer, CachedMatch>[] cache;
+		private final Map<Long, Integer> maxEnds;
+		private final GlobalState options;
 
-		LTMMatcher(Matcher m) {
-			int max = -1;
+		/**
+		 * @param m
+		 *            root {@link Matcher}
+		 * @param cache
+		 *            offset cache
+		 * @param maxEnds
+		 *            memo of maximum end offsets of rules; see
+		 *            {@link #maxEnd(Rule, int, Matcher, int)}
+		 * @param widest
+		 *            the greatest width a match at this offset can have
+		 */
+		LTMMatcher(Matcher m, Map<Integer, CachedMatch>[] cache,
+				Map<Long, Integer> maxEnds, int widest) {
+			this.cache = cache;
+			this.maxEnds = maxEnds;
+			this.options = m.options;
+			int widestEnd = m.offset + widest;
 			try {
-				Match n;
-				while ((n = m.match()) != null) {
-					int w = n.end() - n.start();
-					if (w > max) {
+				Rule r = root;
+				while (r instanceof DeferredDefinitionRule)
+					r = ((DeferredDefinitionRule) r).r;
+				// reordering alternates changes which barriers are hit, and
+				// probing changes the debugging trace and the rightmost match
+				if (r instanceof AlternationRule
+						&& !(containsBarrier || options.debug
+								|| options.keepRightmost))
+					alternates((AlternationRule) r, m, widestEnd);
+				else
+					floored(m, widestEnd);
+			} catch (DoubleColonBarrier e) {
+			}
+		}
+
+		/**
+		 * Collects the longest matches from the root matcher in a single
+		 * pass, raising a {@link Floor} as matches are found.
+		 * 
+		 * @param m
+		 * @param widestEnd
+		 */
+		private void floored(Matcher m, int widestEnd) {
+			Floor floor = new Floor(m.offset);
+			if (m instanceof NonterminalMatcher)
+				((NonterminalMatcher) m).setFloor(floor);
+			Match n;
+			while ((n = m.match()) != null) {
+				if (n.end() < floor.end)
+					continue;
+				if (options.allowOverlap) {
+					if (n.end() > floor.end) {
 						matches.clear();
-						max = w;
+						floor.end = n.end();
 					}
-					if (w == max)
-						matches.add(n);
+					matches.add(n);
+				} else {
+					// only the first of the longest is wanted
+					matches.clear();
+					matches.add(n);
+					if (n.end() == widestEnd)
+						break;
+					floor.end = n.end() + 1;
+				}
+			}
+		}
+
+		/**
+		 * Tries the alternates of the root rule in order of decreasing
+		 * maximum end offset. Ties are resolved as they would be if the
+		 * alternates were tried in order.
+		 * 
+		 * @param ar
+		 *            root rule
+		 * @param m
+		 *            root {@link Matcher}
+		 * @param widestEnd
+		 */
+		private void alternates(AlternationRule ar, Matcher m, int widestEnd) {
+			final int offset = m.offset;
+			final int[] bounds = new int[ar.alternates.length];
+			Integer[] order = new Integer[bounds.length];
+			for (int i = 0; i < bounds.length; i++) {
+				bounds[i] = maxEnd(ar.alternates[i], offset, m.master, 0);
+				order[i] = i;
+			}
+			// stable, so ties remain in their original order
+			Arrays.sort(order, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer o1, Integer o2) {
+					return bounds[o2] - bounds[o1];
+				}
+			});
+			List<List<Match>> ties = new ArrayList<List<Match>>(
+					Collections.<List<Match>> nCopies(bounds.length, null));
+			int best = offset - 1, bestIndex = -1;
+			for (int i : order) {
+				// the matches of earlier alternates win ties
+				int needed = options.allowOverlap || i < bestIndex ? best
+						: best + 1;
+				needed = Math.max(needed, offset);
+				if (bounds[i] < needed)
+					continue;
+				Floor floor = new Floor(needed);
+				NonterminalMatcher am = ar.matcher(offset, cache, m.master, i,
+						floor);
+				Match n;
+				while ((n = am.match()) != null) {
+					if (n.end() < floor.end)
+						continue;
+					if (n.end() > best) {
+						Collections.fill(ties, null);
+						best = n.end();
+					}
+					if (options.allowOverlap) {
+						if (ties.get(i) == null)
+							ties.set(i, new LinkedList<Match>());
+						ties.get(i).add(n);
+						floor.end = best;
+					} else {
+						ties.set(i, new LinkedList<Match>());
+						ties.get(i).add(n);
+						bestIndex = i;
+						if (best == widestEnd)
+							break;
+						floor.end = best + 1;
+					}
+				}
+			}
+			for (List<Match> list : ties) {
+				if (list != null) {
+					matches.addAll(list);
+					if (!options.allowOverlap)
+						break;
 				}
-			} catch (DoubleColonBarrier e) {
 			}
 		}
 
+		/**
+		 * Calculates an upper bound on the end offset of any match of the
+		 * given rule at the given offset, or -1 if the rule certainly cannot
+		 * match there. The bound is exact for terminal rules, which are
+		 * matched to obtain it, and is obtained from static width analysis
+		 * otherwise. Bounds are memoized per rule and offset.
+		 * 
+		 * @param r
+		 * @param offset
+		 * @param master
+		 *            {@link Matcher} to use as the master of any terminal
+		 *            {@link Matcher} created
+		 * @param depth
+		 *            recursion depth, to keep cycles from going too deep
+		 * @return bound on end offset
+		 */
+		private int maxEnd(Rule r, int offset, Matcher master, int depth) {
+			int end = options.end();
+			if (offset > end || end - offset < r.minWidth)
+				return -1;
+			int bound = offset + Math.min(r.maxWidth, end - offset);
+			if (depth > MAX_PROBE_DEPTH || r.cacheIndex == -1)
+				return bound;
+			Long key = ((long) r.cacheIndex << 32) | offset;
+			Integer memo = maxEnds.get(key);
+			if (memo != null)
+				return memo;
+			// in case of recursion
+			maxEnds.put(key, bound);
+			if (r instanceof LeafRule || r instanceof LiteralRule) {
+				Match n = r.matcher(offset, cache, master).match();
+				bound = n == null ? -1 : n.end();
+			} else if (r instanceof SequenceRule) {
+				SequenceRule sr = (SequenceRule) r;
+				int e = offset;
+				for (int i = 0; i < sr.sequence.length; i++) {
+					Rule sub = sr.sequence[i];
+					e = maxEnd(sub, e, master, depth + 1);
+					if (e == -1)
+						break;
+					// only matching gives an exact end to continue from
+					if (!(sub instanceof LeafRule
+							|| sub instanceof LiteralRule)) {
+						e = Math.min(end,
+								Rule.addWidths(e, sr.suffixMax[i + 1]));
+						break;
+					}
+				}
+				bound = e;
+			} else if (r instanceof AlternationRule) {
+				bound = -1;
+				for (Rule a : ((AlternationRule) r).alternates)
+					bound = Math.max(bound,
+							maxEnd(a, offset, master, depth + 1));
+			} else if (r instanceof ConditionalRule)
+				bound = maxEnd(((ConditionalRule) r).r, offset, master,
+						depth + 1);
+			else if (r instanceof DeferredDefinitionRule)
+				bound = maxEnd(((DeferredDefinitionRule) r).r, offset, master,
+						depth + 1);
+			else if (r instanceof CyclicRule)
+				bound = maxEnd(((CyclicRule) r).r, offset, master, depth + 1);
+			maxEnds.put(key, bound);
+			return bound;
+		}
+
 		Match match() {
 			if (hasNext())
 				return matches.removeFirst();
@@ -227,33 +489,62 @@ public class Grammar implements Serializable {
 		private boolean firstMatch;
 		private Matcher m;
 		private LTMMatcher ltmm;
-		private LinkedList<Integer> startOffsets;
+		private Indexer.Offsets startOffsets;
 		private Map<Integer, CachedMatch>[] cache;
 		private Match next;
 		private final boolean ltm;
+		private final Map<Long, Integer> maxEnds = new HashMap<Long, Integer>();
+		/**
+		 * Offset at and beyond which no match may begin.
+		 */
+		private final int limit;
 
-		FindMatcher(LinkedList<Integer> startOffsets,
+		FindMatcher(Indexer.Offsets startOffsets,
 				Map<Integer, CachedMatch>[] cache, GlobalState options,
 				boolean ltm) {
+			this(startOffsets, cache, options, ltm, options.start, options
+					.end());
+		}
+
+		/**
+		 * Finds only matches beginning in the given part of the region;
+		 * matches may extend beyond it.
+		 * 
+		 * @param startOffsets
+		 *            offsets beginning no earlier than <code>from</code>
+		 * @param from
+		 *            least start offset
+		 * @param limit
+		 *            start offsets must precede this
+		 */
+		FindMatcher(Indexer.Offsets startOffsets,
+				Map<Integer, CachedMatch>[] cache, GlobalState options,
+				boolean ltm, int from, int limit) {
 			super(options);
 			this.startOffsets = startOffsets;
 			this.ltm = ltm;
-			if (options.indexed && startOffsets.isEmpty()) {
+			this.limit = limit;
+			index = options.indexed ? startOffsets.next() : from;
+			// an empty region may still hold a zero-width match
+			if (index == -1 || index >= limit && index > options.start) {
+				index = -1;
 				next = null;
 			} else {
 				this.cache = cache;
-				index = options.indexed ? startOffsets.removeFirst()
-						: options.start;
+				if (tooNarrow()) {
+					next = null;
+					return;
+				}
 				firstMatch = true;
 				m = root.matcher(index, cache, this);
 				if (ltm)
-					ltmm = new LTMMatcher(m);
+					ltmm = new LTMMatcher(m, cache, maxEnds, widest());
 				next = fetchNext();
 			}
 		}
 
 		@Override
-		public synchronized Match match() {
+		public Match match() {
 			if (mightHaveNext()) {
 				Match n = next;
 				next = fetchNext();
@@ -285,13 +576,13 @@ public class Grammar implements Serializable {
 				if (n != null) {
 					if (!options.allowOverlap) {
 						if (options.indexed) {
-							index = -1;
-							while (!startOffsets.isEmpty()) {
-								index = startOffsets.removeFirst();
-								if (index >= n.end())
-									break;
-								else
-									index = -1;
+							if (startOffsets instanceof StudiedOffsets)
+								index = ((StudiedOffsets) startOffsets).skip(n
+										.end());
+							else {
+								do
+									index = startOffsets.next();
+								while (index != -1 && index < n.end());
 							}
 						} else
 							index = n.end();
@@ -300,22 +591,308 @@ public class Grammar implements Serializable {
 				}
 				if (!(firstNull && !options.allowOverlap)) {
 					if (options.indexed) {
-						if (startOffsets.isEmpty())
+						index = startOffsets.next();
+						if (index == -1)
 							break;
-						index = startOffsets.removeFirst();
 					} else
 						index++;
 				}
 				firstNull = false;
-				if (index >= options.end())
+				if (index >= limit || tooNarrow())
 					break;
 				m = root.matcher(index, cache, this);
 				if (ltm)
-					ltmm = new LTMMatcher(m);
+					ltmm = new LTMMatcher(m, cache, maxEnds, widest());
 			}
 			return null;
 		}
 
+		/**
+		 * Start offsets are visited in ascending order, so once too little of
+		 * the sequence remains for the root rule to match at the current
+		 * offset, no match is possible at any later offset either. Partial
+		 * matches are still wanted if we are keeping the rightmost.
+		 * 
+		 * @return whether too little of the sequence remains for a match
+		 */
+		private boolean tooNarrow() {
+			return !options.keepRightmost
+					&& options.end() - index < root.minWidth;
+		}
+
+		/**
+		 * @return the widest match possible at the current offset
+		 */
+		private int widest() {
+			return Math.min(root.maxWidth, options.end() - index);
+		}
+
+		@Override
+		public boolean mightHaveNext() {
+			return next != null;
+		}
+
+		@Override
+		protected String name() {
+			return "find";
+		}
+	}
+
+	/**
+	 * {@link Matcher} for {@link Grammar#find(CharSequence, Options)} that
+	 * divides the region into chunks of {@link Options#chunkSize()} offsets
+	 * and finds the matches beginning in each chunk on a pool, shared by all
+	 * such matchers, of at least {@link Options#parallelism()} threads; no
+	 * more than twice that many chunks are submitted at a time. Each chunk is matched against the
+	 * whole region, so its matches may run past its end and assertions see
+	 * the same context they would in a sequential search.
+	 * <p>
+	 * When matches may not overlap, a chunk's matches form a chain beginning at
+	 * its first offset, whereas the true chain enters the chunk wherever the
+	 * last match before it ended. The chains agree once the true chain reaches
+	 * an offset from which the chunk's chain sought its next match; until then
+	 * matches are found again in the calling thread, reusing the chunk's
+	 * cache.
+	 * <p>
+	 * The caches of terminal rules are {@link ConcurrentMatchCache
+	 * ConcurrentMatchCaches} shared by all chunks, so a terminal examined by a
+	 * match running past the end of one chunk need not be examined again by
+	 * the next. The caches of non-terminal rules belong to a single chunk.
+	 * 
+	 * @author David F. Houghton - Oct 19, 2026
+	 * 
+	 */
+	private class ChunkedFindMatcher extends GrammarMatcher {
+		/**
+		 * The matches beginning in one chunk and the state used to find them.
+		 */
+		private class Chunk {
+			final int from, to;
+			final GlobalState options;
+			final Map<Integer, CachedMatch>[] cache;
+			final List<Match> matches = new ArrayList<Match>();
+
+			Chunk(int from, int to) {
+				this.from = from;
+				this.to = to;
+				options = verifyOptions(ChunkedFindMatcher.this.options.cs, opt);
+				options.session
+						.shareDeadline(ChunkedFindMatcher.this.options.session);
+				options.session.haltWhen(halt);
+				cache = offsetCache(opt, options);
+				for (Entry<Integer, ConcurrentMatchCache> e : terminalCaches
+						.entrySet())
+					cache[e.getKey()] = e.getValue();
+			}
+
+			/**
+			 * @param start
+			 *            least start offset
+			 * @return matcher for matches beginning in this chunk no earlier
+			 *         than <code>start</code>
+			 */
+			FindMatcher matcher(int start) {
+				Indexer.Offsets offsets = options.indexed ? options.indexer
+						.index(options.cs, start, options.end) : null;
+				return new FindMatcher(offsets, cache, options, ltm, start, to);
+			}
+
+			/**
+			 * @return offset from which this chunk's chain sought its
+			 *         <code>i</code>th match
+			 */
+			int sought(int i) {
+				return i == 0 ? from : matches.get(i - 1).end();
+			}
+		}
+
+		private final Options opt;
+		private final boolean ltm;
+		/**
+		 * Caches of terminal rules, shared by all chunks, keyed by cache
+		 * index. A terminal match depends only on the rule and the offset, so
+		 * whatever one thread finds is good for all.
+		 */
+		private final Map<Integer, ConcurrentMatchCache> terminalCaches = new HashMap<Integer, ConcurrentMatchCache>();
+		private final ForkJoinPool pool;
+		/**
+		 * Set when the search fails or is cancelled, to stop the chunks under
+		 * way.
+		 */
+		private volatile boolean cancelled = false;
+		private final BooleanSupplier halt = new BooleanSupplier() {
+			@Override
+			public boolean getAsBoolean() {
+				return cancelled;
+			}
+		};
+		private final LinkedList<ForkJoinTask<Chunk>> pending = new LinkedList<ForkJoinTask<Chunk>>();
+		/**
+		 * Start of the next chunk to submit.
+		 */
+		private int submitted;
+		private Chunk chunk;
+		/**
+		 * Index in the current chunk's matches of the next to consider.
+		 */
+		private int i;
+		/**
+		 * Matcher used in place of the current chunk's chain until the chains
+		 * agree.
+		 */
+		private FindMatcher fixup;
+		/**
+		 * Offset from which the next match is sought.
+		 */
+		private int q;
+		private Match next;
+
+		ChunkedFindMatcher(Options opt, GlobalState options, boolean ltm) {
+			super(options);
+			this.opt = opt;
+			this.ltm = ltm;
+			for (Rule r : rules()) {
+				if ((r instanceof LeafRule || r instanceof LiteralRule)
+						&& !terminalCaches.containsKey(r.cacheIndex))
+					terminalCaches.put(r.cacheIndex, new ConcurrentMatchCache(
+							Math.max(options.end, options.rcsEnd)));
+			}
+			pool = searchPool(options.parallelism);
+			submitted = q = options.start;
+			for (int j = 0; j < 2 * options.parallelism; j++)
+				submit();
+			next = fetchNext();
+		}
+
+		private void submit() {
+			if (submitted >= options.end)
+				return;
+			final int from = submitted, to = (int) Math.min((long) from
+					+ opt.chunkSize, options.end);
+			submitted = to;
+			pending.add(pool.submit(new Callable<Chunk>() {
+				@Override
+				public Chunk call() {
+					Chunk c = new Chunk(from, to);
+					FindMatcher m = c.matcher(from);
+					Match n;
+					while ((n = m.match()) != null)
+						c.matches.add(n);
+					return c;
+				}
+			}));
+		}
+
+		@Override
+		public Match match() {
+			if (mightHaveNext()) {
+				Match n = next;
+				next = fetchNext();
+				return n;
+			}
+			return null;
+		}
+
+		/**
+		 * @return the next match, if any
+		 * @throws RuntimeException
+		 *             thrown in this or any chunk's thread, having first
+		 *             stopped the search of the remaining chunks
+		 */
+		private Match fetchNext() {
+			try {
+				return fetch();
+			} catch (RuntimeException e) {
+				cancelled = true;
+				for (ForkJoinTask<Chunk> t : pending)
+					t.cancel(true);
+				pending.clear();
+				chunk = null;
+				throw e;
+			}
+		}
+
+		/**
+		 * Waits for a chunk to be searched.
+		 * 
+		 * @throws MatchCancelledException
+		 *             if the thread is interrupted while waiting and the
+		 *             options are {@link Options#interruptible() interruptible}
+		 */
+		private Chunk await(ForkJoinTask<Chunk> t) {
+			if (!opt.interruptible)
+				return t.join();
+			try {
+				return t.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new MatchCancelledException(
+						"match interrupted awaiting chunk", null, 0);
+			} catch (ExecutionException e) {
+				Throwable c = e.getCause();
+				if (c instanceof RuntimeException)
+					throw (RuntimeException) c;
+				if (c instanceof Error)
+					throw (Error) c;
+				throw new GrammarException(c.toString());
+			}
+		}
+
+		private Match fetch() {
+			while (true) {
+				if (chunk == null) {
+					if (pending.isEmpty())
+						return null;
+					chunk = await(pending.removeFirst());
+					submit();
+					i = 0;
+					fixup = null;
+					q = Math.max(q, chunk.from);
+				}
+				if (fixup == null) {
+					if (options.allowOverlap) {
+						// chunks are independent
+						if (i < chunk.matches.size())
+							return chunk.matches.get(i++);
+						chunk = null;
+						continue;
+					}
+					if (synchronize()) {
+						if (i == chunk.matches.size()) {
+							chunk = null;
+							continue;
+						}
+						Match n = chunk.matches.get(i++);
+						q = n.end();
+						return n;
+					}
+					fixup = chunk.matcher(q);
+				}
+				Match n = fixup.match();
+				if (n == null) {
+					chunk = null;
+					continue;
+				}
+				q = n.end();
+				if (synchronize())
+					fixup = null;
+				return n;
+			}
+		}
+
+		/**
+		 * Skips the current chunk's matches beginning before {@link #q}.
+		 * 
+		 * @return whether the chunk's chain sought its next match from
+		 *         {@link #q} or earlier, so its remaining matches are the true
+		 *         ones
+		 */
+		private boolean synchronize() {
+			while (i < chunk.matches.size() && chunk.matches.get(i).start() < q)
+				i++;
+			return chunk.sought(i) <= q;
+		}
+
 		@Override
 		public boolean mightHaveNext() {
 			return next != null;
@@ -365,10 +942,41 @@ public class Grammar implements Serializable {
 	 * Whether the grammar contains any lookbehinds.
 	 */
 	private boolean containsReversal = false;
+	/**
+	 * Whether the grammar contains any backtracking barriers.
+	 */
+	private boolean containsBarrier = false;
 	/**
 	 * Collection of terminal rules to be used in studying.
 	 */
 	private HashSet<String> terminalRules = null;
+	/**
+	 * {@link Indexer} derived from what may begin a match of the root rule;
+	 * used when {@link Options#indexer()} is {@code null}. See
+	 * {@link Options#autoIndex()}.
+	 */
+	private Indexer derivedIndexer;
+	/**
+	 * A literal every match must contain, used to skip regions of the
+	 * sequence; see {@link PrefilterIndexer}.
+	 */
+	private RequiredLiteral required;
+	/**
+	 * Whether {@link #freeze()} has been called, after which all the fields
+	 * above are fixed and may be read without locking.
+	 */
+	private volatile boolean frozen = false;
+	/**
+	 * Number of offset caches a match requires; set by {@link #freeze()}.
+	 */
+	private int cacheCount;
+	/**
+	 * Pool shared by all {@link ChunkedFindMatcher ChunkedFindMatchers} of this
+	 * grammar and by parallel studying, created when first needed. Its threads
+	 * are daemons and expire when idle, so a matcher abandoned before its last
+	 * match leaves nothing running but the chunks already submitted.
+	 */
+	private transient volatile ForkJoinPool searchPool;
 
 	/**
 	 * Delegates to {@link #Grammar(String[], Map)}, setting the second
@@ -734,6 +1342,7 @@ public class Grammar implements Serializable {
 	}
 
 	private DeferredDefinitionRule checkRuleDefinition(String label) {
+		checkMutable();
 		Label l = terminalLabelMap.get(label);
 		if (l == null)
 			throw new GrammarException("unknown terminal rule: " + label);
@@ -765,7 +1374,15 @@ public class Grammar implements Serializable {
 	 * 
 	 * @throws GrammarException
 	 */
-	private synchronized void checkComplete() throws GrammarException {
+	private void checkComplete() throws GrammarException {
+		if (!frozen)
+			validate();
+	}
+
+	/**
+	 * Does the work of {@link #checkComplete()}.
+	 */
+	private synchronized void validate() throws GrammarException {
 		if (validated)
 			return;
 		if (!undefinedRules.isEmpty()) {
@@ -799,15 +1416,68 @@ public class Grammar implements Serializable {
 				containsReversal = true;
 			if (r instanceof AlternationRule)
 				containsAlternation = true;
+			if (r instanceof BacktrackingBarrier)
+				containsBarrier = true;
 		}
 		// fix tag maps in alternations
 		root.fixAlternation();
+		// find lookbehinds that needn't be reversed and compile conditions
+		for (Rule r : rules()) {
+			if (r instanceof Assertion)
+				((Assertion) r).findForwardRule();
+			else if (r instanceof ConditionalRule)
+				((ConditionalRule) r).compile();
+		}
 		// create actual offset cache
 		root.setCacheIndex(new HashMap<String, Integer>());
+		// calculate minimum and maximum match widths
+		root.width(new HashMap<String, int[]>());
+		// derive an indexer from what may begin a match
+		if (root.minWidth > 0) {
+			StartSet ss = root.startSet(new HashMap<String, StartSet>());
+			if (ss != null)
+				derivedIndexer = ss.indexer();
+		}
+		for (RequiredLiteral rl : root.required(
+				new HashMap<String, Map<String, RequiredLiteral>>()).values()) {
+			if (rl.betterThan(required))
+				required = rl;
+		}
 
 		validated = true;
 	}
 
+	/**
+	 * Completes all the preparation otherwise done lazily as the grammar is
+	 * first used -- validation, assignment of unique ids and cache indices,
+	 * and the analysis of widths and initial rules -- and forbids any further
+	 * modification. Thereafter the grammar's state is fixed and matching takes
+	 * no lock on the grammar, so a frozen grammar may be shared freely among
+	 * threads. Freezing a frozen grammar does nothing.
+	 * 
+	 * @return this grammar
+	 * @throws GrammarException
+	 *             if the grammar is incomplete
+	 */
+	public synchronized Grammar freeze() throws GrammarException {
+		if (!frozen) {
+			validate();
+			initialRules();
+			cacheCount = root.maxCacheIndex(-1, new HashSet<Rule>()) + 1;
+			frozen = true;
+		}
+		return this;
+	}
+
+	/**
+	 * @throws GrammarException
+	 *             if the grammar has been frozen
+	 */
+	private void checkMutable() throws GrammarException {
+		if (frozen)
+			throw new GrammarException("grammar is frozen");
+	}
+
 	/**
 	 * Generates iterator over matches whose start offset is the beginning of
 	 * the given {@link CharSequence}.
@@ -838,10 +1508,13 @@ public class Grammar implements Serializable {
 		checkComplete();
 		final GlobalState co = verifyOptions(cs, opt);
 		final boolean ltm = containsAlternation && opt.longestMatch();
-		final Map<Integer, CachedMatch>[] cache = offsetCache(opt, co.length);
-		final Set<Integer> startOffsets = startOffsets(cs, co, cache);
+		final Map<Integer, CachedMatch>[] cache = offsetCache(opt, co);
+		final boolean unindexed = co.indexed
+				&& startOffsets(cs, co, cache).next() == -1;
 		final Matcher m = root.matcher(co.start, cache, new DummyMatcher(co));
-		final LTMMatcher ltmm = ltm ? new LTMMatcher(m) : null;
+		final LTMMatcher ltmm = ltm ? new LTMMatcher(m, cache,
+				new HashMap<Long, Integer>(), Math.min(root.maxWidth, co.end()
+						- co.start)) : null;
 		abstract class LookingAtMatcher extends GrammarMatcher {
 			LookingAtMatcher() {
 				super(co);
@@ -853,13 +1526,12 @@ public class Grammar implements Serializable {
 			}
 
 		}
-		// synchronization wrappers
-		return !co.allowOverlap ? new LookingAtMatcher() {
+		return synchronize(opt, !co.allowOverlap ? new LookingAtMatcher() {
 			boolean matchedOnce = false;
 
 			@Override
-			public synchronized boolean mightHaveNext() {
-				if (options.indexed && startOffsets.isEmpty())
+			public boolean mightHaveNext() {
+				if (unindexed)
 					return false;
 				try {
 					return matchedOnce ? false : (ltm ? ltmm.hasNext() : m
@@ -870,9 +1542,9 @@ public class Grammar implements Serializable {
 			}
 
 			@Override
-			public synchronized Match match() {
+			public Match match() {
 				Match n = null;
-				if (!(matchedOnce || options.indexed && startOffsets.isEmpty())) {
+				if (!(matchedOnce || unindexed)) {
 					matchedOnce = true;
 					try {
 						n = ltm ? ltmm.match() : m.match();
@@ -893,8 +1565,8 @@ public class Grammar implements Serializable {
 				: new LookingAtMatcher() {
 
 					@Override
-					public synchronized boolean mightHaveNext() {
-						if (options.indexed && startOffsets.isEmpty())
+					public boolean mightHaveNext() {
+						if (unindexed)
 							return false;
 						try {
 							return ltm ? ltmm.hasNext() : m.mightHaveNext();
@@ -904,9 +1576,9 @@ public class Grammar implements Serializable {
 					}
 
 					@Override
-					public synchronized Match match() {
+					public Match match() {
 						Match n = null;
-						if (!(options.indexed && startOffsets.isEmpty())) {
+						if (!unindexed) {
 							try {
 								n = ltm ? ltmm.match() : m.match();
 							} catch (DoubleColonBarrier e) {
@@ -921,7 +1593,7 @@ public class Grammar implements Serializable {
 					public Match rightmostMatch() {
 						return m.rightmost;
 					}
-				};
+				});
 	}
 
 	/**
@@ -954,13 +1626,256 @@ public class Grammar implements Serializable {
 		checkComplete();
 		final GlobalState options = verifyOptions(s, opt);
 		final boolean ltm = containsAlternation && opt.longestMatch();
-		final Map<Integer, CachedMatch>[] cache = offsetCache(opt,
-				options.length);
-		List<Integer> list = new ArrayList<Integer>(startOffsets(s, options,
-				cache));
-		Collections.sort(list);
-		final LinkedList<Integer> startOffsets = new LinkedList<Integer>(list);
-		return new FindMatcher(startOffsets, cache, options, ltm);
+		// chunks cannot tell which of their rightmost matches is rightmost
+		if (!options.study && options.parallelism > 1
+				&& options.length > opt.chunkSize && !options.keepRightmost)
+			return synchronize(opt, new ChunkedFindMatcher(opt, options, ltm));
+		final Map<Integer, CachedMatch>[] cache = offsetCache(opt, options);
+		return synchronize(opt, new FindMatcher(startOffsets(s, options, cache),
+				cache, options, ltm));
+	}
+
+	/**
+	 * Finds the matches in each of many sequences, handing the sequences out
+	 * to tasks run by the given {@link Executor}. This method blocks until
+	 * every sequence has been searched. See
+	 * {@link #findAll(Iterable, Options, Executor, boolean)}.
+	 * 
+	 * @param inputs
+	 *            sequences against which to match
+	 * @param opt
+	 *            matching parameters, applied to each sequence
+	 * @param executor
+	 *            runs the searches
+	 * @return for each sequence, in order, the matches
+	 *         {@link #find(CharSequence, Options)} would find in it
+	 * @throws GrammarException
+	 *             if the search of any sequence fails
+	 */
+	public List<List<Match>> findAll(Iterable<? extends CharSequence> inputs,
+			Options opt, Executor executor) throws GrammarException {
+		List<List<Match>> list = new ArrayList<List<Match>>();
+		for (Iterator<BatchResult> i = findAll(inputs, opt, executor, true); i
+				.hasNext();)
+			list.add(i.next().matches());
+		return list;
+	}
+
+	/**
+	 * Finds the matches in each of many sequences, handing the sequences out
+	 * to tasks run by the given {@link Executor}. The threads running the
+	 * tasks keep their offset caches and regex matchers from one sequence to
+	 * the next, so a great many short sequences cost little more than the
+	 * matching itself.
+	 * <p>
+	 * Sequences are taken from <code>inputs</code>, in the thread calling the
+	 * iterator, only as results are consumed: no more than twice
+	 * {@link Options#parallelism()} are searched or awaiting consumption at
+	 * any time. The iterator blocks until the next result is ready. It is not
+	 * thread safe. Whatever is thrown in the search of a sequence is thrown by
+	 * {@link BatchResult#matches()}.
+	 * <p>
+	 * If the consumer is interrupted while waiting and the options are
+	 * {@link Options#interruptible() interruptible}, the iterator throws a
+	 * {@link MatchCancelledException} and cancels the searches. It then
+	 * returns what remains of those already submitted, mostly cancelled, and
+	 * takes no more sequences.
+	 * 
+	 * @param inputs
+	 *            sequences against which to match
+	 * @param opt
+	 *            matching parameters, applied to each sequence
+	 * @param executor
+	 *            runs the searches
+	 * @param ordered
+	 *            whether results are returned in the order of the sequences;
+	 *            otherwise they are returned as they are completed
+	 * @return iterator over the matches in each sequence
+	 * @throws GrammarException
+	 */
+	public Iterator<BatchResult> findAll(
+			Iterable<? extends CharSequence> inputs, Options opt,
+			Executor executor, boolean ordered) throws GrammarException {
+		checkComplete();
+		return new BatchIterator(inputs.iterator(), opt, executor,
+				containsAlternation && opt.longestMatch(), ordered);
+	}
+
+	/**
+	 * State a thread searching sequences for
+	 * {@link Grammar#findAll(Iterable, Options, Executor, boolean)} keeps from
+	 * one sequence to the next.
+	 */
+	private class Worker {
+		private final Session session = new Session();
+		private Map<Integer, CachedMatch>[] cache;
+
+		List<Match> find(CharSequence s, Options opt, boolean ltm,
+				BooleanSupplier halt) {
+			session.clear();
+			GlobalState options = verifyOptions(s, opt, session);
+			session.haltWhen(halt);
+			cache = offsetCache(opt, options, cache);
+			try {
+				FindMatcher m = new FindMatcher(startOffsets(s, options,
+						cache), cache, options, ltm);
+				List<Match> matches = new ArrayList<Match>();
+				Match n;
+				while ((n = m.match()) != null)
+					matches.add(n);
+				return matches;
+			} catch (RuntimeException e) {
+				// don't hold on to the caches of an aborted match
+				cache = null;
+				session.clear();
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * Iterator returned by
+	 * {@link Grammar#findAll(Iterable, Options, Executor, boolean)}.
+	 */
+	private class BatchIterator implements Iterator<BatchResult> {
+		private final Iterator<? extends CharSequence> inputs;
+		private final Options opt;
+		private final Executor executor;
+		private final boolean ltm, ordered;
+		/**
+		 * Greatest number of sequences submitted but not yet returned.
+		 */
+		private final int window;
+		/**
+		 * Workers not in use by any task.
+		 */
+		private final Queue<Worker> idle = new ConcurrentLinkedQueue<Worker>();
+		private final BlockingQueue<BatchResult> done = new LinkedBlockingQueue<BatchResult>();
+		/**
+		 * Results completed ahead of their turn.
+		 */
+		private final Map<Integer, BatchResult> early = new HashMap<Integer, BatchResult>();
+		private int submitted = 0, returned = 0;
+		private BatchResult next;
+		/**
+		 * Set when the consumer is interrupted, to stop the searches under
+		 * way and skip those not yet begun. Every search submitted still
+		 * posts a result, so the consumer may drain them; no more are
+		 * submitted.
+		 */
+		private volatile boolean cancelled = false;
+		private final BooleanSupplier halt = new BooleanSupplier() {
+			@Override
+			public boolean getAsBoolean() {
+				return cancelled;
+			}
+		};
+
+		BatchIterator(Iterator<? extends CharSequence> inputs, Options opt,
+				Executor executor, boolean ltm, boolean ordered) {
+			this.inputs = inputs;
+			// each sequence is searched by a single thread
+			this.opt = new Options(opt).parallelism(1);
+			this.executor = executor;
+			this.ltm = ltm;
+			this.ordered = ordered;
+			window = 2 * Math.max(opt.parallelism, 1);
+		}
+
+		private void submit() {
+			while (!cancelled && submitted - returned < window
+					&& inputs.hasNext()) {
+				final int index = submitted++;
+				final CharSequence s = inputs.next();
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						if (cancelled) {
+							done.add(new BatchResult(index, s, null,
+									new MatchCancelledException(
+											"search cancelled", null, 0)));
+							return;
+						}
+						Worker w = idle.poll();
+						if (w == null)
+							w = new Worker();
+						List<Match> matches = null;
+						Throwable error = null;
+						try {
+							matches = w.find(s, opt, ltm, halt);
+						} catch (RuntimeException e) {
+							error = e;
+						} catch (Error e) {
+							error = e;
+						}
+						idle.offer(w);
+						done.add(new BatchResult(index, s, matches, error));
+					}
+				});
+			}
+		}
+
+		/**
+		 * Waits for a search to complete.
+		 * 
+		 * @throws MatchCancelledException
+		 *             if the thread is interrupted while waiting and the
+		 *             options are {@link Options#interruptible() interruptible}
+		 */
+		private BatchResult take() {
+			boolean interrupted = false;
+			try {
+				while (true) {
+					try {
+						return done.take();
+					} catch (InterruptedException e) {
+						interrupted = true;
+						if (opt.interruptible) {
+							cancelled = true;
+							throw new MatchCancelledException(
+									"interrupted awaiting matches", null, 0);
+						}
+					}
+				}
+			} finally {
+				if (interrupted)
+					Thread.currentThread().interrupt();
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (next == null) {
+				submit();
+				if (returned == submitted)
+					return false;
+				if (ordered) {
+					while (!early.containsKey(returned)) {
+						BatchResult r = take();
+						early.put(r.index(), r);
+					}
+					next = early.remove(returned);
+				} else
+					next = take();
+				returned++;
+				submit();
+			}
+			return true;
+		}
+
+		@Override
+		public BatchResult next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			BatchResult r = next;
+			next = null;
+			return r;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
 	}
 
 	/**
@@ -969,14 +1884,31 @@ public class Grammar implements Serializable {
 	 * take place.
 	 * 
 	 * @param options
-	 * @param length
-	 *            length of character sequence
+	 * @param gs
+	 *            state describing the region to be matched; caches are keyed
+	 *            by absolute offset, so array-backed caches must reach the
+	 *            end of the region, not just span its length
 	 * 
 	 * @return map from labels to sets of offsets where the associated rules are
 	 *         known not to match
 	 */
-	private Map<Integer, CachedMatch>[] offsetCache(Options options, int length) {
-		if (initialRules == null) {
+	private Map<Integer, CachedMatch>[] offsetCache(Options options,
+			GlobalState gs) {
+		return offsetCache(options, gs, null);
+	}
+
+	/**
+	 * @param options
+	 * @param gs
+	 *            state describing the region to be matched
+	 * @param reuse
+	 *            caches used for some earlier match, which are cleared and
+	 *            returned if suitable; may be {@code null}
+	 * @return offset caches
+	 */
+	private Map<Integer, CachedMatch>[] offsetCache(Options options,
+			GlobalState gs, Map<Integer, CachedMatch>[] reuse) {
+		if (!frozen && initialRules == null) {
 			synchronized (this) {
 				// look for reversals
 				for (Rule r : rules()) {
@@ -990,18 +1922,26 @@ public class Grammar implements Serializable {
 				root.setCacheIndex(new HashMap<String, Integer>());
 			}
 		}
-		int max = root.maxCacheIndex(-1, new HashSet<Rule>());
-		@SuppressWarnings("unchecked")
-		Map<Integer, CachedMatch>[] offsetCache = new Map[max + 1];
+		int count = frozen ? cacheCount : root.maxCacheIndex(-1,
+				new HashSet<Rule>()) + 1;
 		boolean lean = options.leanMemory, fat = options.fatMemory;
 		if (!(lean || fat))
-			fat = length < options.longStringLength;
+			fat = gs.length < options.longStringLength;
+		int size = Math.max(gs.end, gs.rcsEnd);
+		if (reuse != null && reuse.length == count
+				&& (count == 0 || reusable(reuse[0], lean, fat, size))) {
+			for (Map<Integer, CachedMatch> m : reuse)
+				m.clear();
+			return reuse;
+		}
+		@SuppressWarnings("unchecked")
+		Map<Integer, CachedMatch>[] offsetCache = new Map[count];
 		for (int i = 0; i < offsetCache.length; i++) {
 			Map<Integer, CachedMatch> m;
 			if (lean)
 				m = new TreeMap<Integer, CachedMatch>();
 			else if (fat)
-				m = new MatchCache(length);
+				m = new MatchCache(size);
 			else
 				m = new HashMap<Integer, CachedMatch>();
 			offsetCache[i] = m;
@@ -1009,6 +1949,32 @@ public class Grammar implements Serializable {
 		return offsetCache;
 	}
 
+	/**
+	 * @param m
+	 *            cache used for some earlier match
+	 * @param lean
+	 *            whether a {@link TreeMap} is wanted
+	 * @param fat
+	 *            whether a {@link MatchCache} is wanted
+	 * @param size
+	 *            greatest offset to be cached
+	 * @return whether the cache may be cleared and used again; a
+	 *         {@link MatchCache} must be big enough but not so big that
+	 *         clearing it costs more than allocating a fresh one
+	 */
+	private static boolean reusable(Map<Integer, CachedMatch> m, boolean lean,
+			boolean fat, int size) {
+		if (lean)
+			return m instanceof TreeMap;
+		if (fat) {
+			if (!(m instanceof MatchCache))
+				return false;
+			int limit = ((MatchCache) m).limit();
+			return limit >= size && limit / 2 <= size;
+		}
+		return m instanceof HashMap;
+	}
+
 	/**
 	 * Prints out nicely formatted rule definitions for grammar, ordering the
 	 * rules in descending order by independence. The least independent rule is
@@ -1188,24 +2154,31 @@ public class Grammar implements Serializable {
 			throws GrammarException {
 		checkComplete();
 		final GlobalState options = verifyOptions(s, opt);
-		final Map<Integer, CachedMatch>[] cache = offsetCache(opt,
-				options.length);
-		final Set<Integer> startOffsets = startOffsets(s, options, cache);
+		final Map<Integer, CachedMatch>[] cache = offsetCache(opt, options);
+		final boolean unindexed = options.indexed
+				&& startOffsets(s, options, cache).next() == -1;
 		final Matcher m = root.matcher(options.start, cache, new DummyMatcher(
 				options));
-		return new GrammarMatcher(options) {
+		// only matches reaching the end are of interest
+		if (m instanceof NonterminalMatcher)
+			((NonterminalMatcher) m).setFloor(new Floor(options.end()));
+		return synchronize(opt, new GrammarMatcher(options) {
 			boolean matchedOnce = false;
 			Match next = fetchNext();
 
 			@Override
 			public boolean mightHaveNext() {
-				if (options.indexed && startOffsets.isEmpty())
+				if (unindexed)
 					return false;
 				return !options.allowOverlap && matchedOnce || next != null;
 			}
 
 			private Match fetchNext() {
-				if (options.indexed && startOffsets.isEmpty())
+				if (unindexed)
+					return null;
+				if (!options.keepRightmost
+						&& (options.length < root.minWidth
+								|| options.length > root.maxWidth))
 					return null;
 				Match n;
 				try {
@@ -1219,7 +2192,7 @@ public class Grammar implements Serializable {
 			}
 
 			@Override
-			public synchronized Match match() {
+			public Match match() {
 				if (mightHaveNext()) {
 					Match n = next;
 					next = fetchNext();
@@ -1238,78 +2211,179 @@ public class Grammar implements Serializable {
 			protected String name() {
 				return "matches";
 			}
-		};
+		});
 	}
 
-	private Set<Integer> startOffsets(final CharSequence s,
+	/**
+	 * Studies the sequence, if required, and returns the offsets at which
+	 * matching should be attempted.
+	 * 
+	 * @return start offsets in ascending order
+	 */
+	private Indexer.Offsets startOffsets(final CharSequence s,
 			final GlobalState options, final Map<Integer, CachedMatch>[] cache) {
-		final Set<Integer> startOffsets = new HashSet<Integer>();
+		final OffsetSet startOffsets = new OffsetSet(options.start);
 		if (options.study) {
-			Set<String> done = new HashSet<String>(rules().size() * 2);
-			// collect offsets from initial rules
 			initialRules();
-			for (Rule r : rules()) {
-				if (initialRules.contains(r.uid())) {
-					if (!done.contains(r.uid()))
-						startOffsets.addAll(r.study(s, cache, options));
-					done.add(r.uid());
+			// collect forward terminal rules, initial rules first; fused
+			// conditions study their terminals, so they are studied last
+			Set<String> done = new HashSet<String>(rules().size() * 2);
+			List<Rule> terminals = new ArrayList<Rule>();
+			List<Rule> conditions = new ArrayList<Rule>();
+			for (int pass = 0; pass < 2; pass++) {
+				for (Rule r : rules()) {
+					String uid = r.uid();
+					if (done.contains(uid))
+						continue;
+					boolean wanted = pass == 0 ? initialRules.contains(uid)
+							: terminalRules.contains(uid)
+									&& !(containsReversal && r.isReversed());
+					if (wanted) {
+						if (r instanceof ConditionalRule)
+							conditions.add(r);
+						else
+							terminals.add(r);
+						done.add(uid);
+					}
 				}
 			}
-			if (containsReversal || done.size() < terminalRules.size()) {
+			List<Set<Integer>> found = study(terminals, s, cache, options);
+			for (Rule r : conditions)
+				found.add(r.study(s, cache, options));
+			terminals.addAll(conditions);
+			for (int i = 0; i < terminals.size(); i++) {
+				if (found.get(i) != null
+						&& initialRules.contains(terminals.get(i).uid()))
+					startOffsets.addAll(found.get(i));
+			}
+			if (containsReversal) {
+				// study reversed rules, reverse caches of their non-reversed
+				// counterparts where possible
 				String reversed = null;
-				// study terminal rules, skipping initials and reversed rules
 				for (Rule r : rules()) {
 					if (terminalRules.contains(r.uid())) {
 						if (!done.contains(r.uid())) {
-							if (containsReversal && r.isReversed())
-								continue;
-							r.study(s, cache, options);
+							String uid = r.uid();
+							uid = uid.substring(0, uid.length()
+									- Assertion.REVERSAL_SUFFIX.length());
+							// fused conditions cache verdicts, not just
+							// terminal matches, so they study themselves
+							if (done.contains(uid)
+									&& !(r instanceof ConditionalRule)) {
+								Rule counterpart = null;
+								for (Rule r2 : rules()) {
+									if (r2.uid().equals(uid)) {
+										counterpart = r2;
+										break;
+									}
+								}
+								Map<Integer, CachedMatch> countercache = cache[counterpart.cacheIndex];
+								Map<Integer, CachedMatch> owncache = reverse(r,
+										countercache, options.rcs);
+								cache[r.cacheIndex] = owncache;
+							} else if (r instanceof LeafRule
+									|| r instanceof LiteralRule) {
+								if (reversed == null)
+									reversed = options.rcs.toString();
+								r.study(reversed, cache, options);
+							} else
+								r.study(options.rcs, cache, options);
 							done.add(r.uid());
 						}
 					}
 				}
-				if (containsReversal) {
-					// study reversed rules, reverse caches of their
-					// non-reversed
-					// counterparts where possible
-					for (Rule r : rules()) {
-						if (terminalRules.contains(r.uid())) {
-							if (!done.contains(r.uid())) {
-								String uid = r.uid();
-								uid = uid.substring(0, uid.length()
-										- Assertion.REVERSAL_SUFFIX.length());
-								if (done.contains(uid)) {
-									Rule counterpart = null;
-									for (Rule r2 : rules()) {
-										if (r2.uid().equals(uid)) {
-											counterpart = r2;
-											break;
-										}
-									}
-									Map<Integer, CachedMatch> countercache = cache[counterpart.cacheIndex];
-									Map<Integer, CachedMatch> owncache = reverse(
-											r, countercache, options.rcs);
-									cache[r.cacheIndex] = owncache;
-								} else if (r instanceof LeafRule
-										|| r instanceof LiteralRule) {
-									if (reversed == null)
-										reversed = options.rcs.toString();
-									r.study(reversed, cache, options);
-								} else
-									r.study(options.rcs, cache, options);
-								done.add(r.uid());
-							}
-						}
-					}
+			}
+		}
+		if (options.indexer != null)
+			return options.indexer.index(options.cs, options.start,
+					options.end);
+		return new StudiedOffsets(startOffsets, options.start);
+	}
+
+	/**
+	 * @param parallelism
+	 *            number of threads wanted
+	 * @return {@link #searchPool}, replaced by a larger pool if it has fewer
+	 *         threads than wanted; a replaced pool is not shut down, since
+	 *         matchers may still be submitting chunks to it, but left to expire
+	 *         its idle threads
+	 */
+	private ForkJoinPool searchPool(int parallelism) {
+		ForkJoinPool pool = searchPool;
+		if (pool == null || pool.getParallelism() < parallelism) {
+			synchronized (this) {
+				pool = searchPool;
+				if (pool == null || pool.getParallelism() < parallelism) {
+					searchPool = pool = new ForkJoinPool(parallelism);
 				}
 			}
 		}
-		if (options.indexer != null) {
-			startOffsets.clear();
-			startOffsets.addAll(options.indexer.index(options.cs,
-					options.start, options.end));
+		return pool;
+	}
+
+	/**
+	 * Studies terminal rules, dividing them among {@link GlobalState#parallelism}
+	 * threads if there is more than one. Each rule writes only to its own
+	 * cache, so they may be studied in any order. Studying takes no steps, so
+	 * it is not subject to {@link Options#maxSteps()},
+	 * {@link Options#deadline()}, or cancellation; these apply once matching
+	 * begins.
+	 * 
+	 * @return the offsets each rule found, in the order of the rules
+	 */
+	private List<Set<Integer>> study(List<Rule> rules, final CharSequence s,
+			final Map<Integer, CachedMatch>[] cache, final GlobalState options) {
+		List<Set<Integer>> found = new ArrayList<Set<Integer>>(rules.size());
+		int threads = Math.min(options.parallelism, rules.size());
+		if (threads < 2) {
+			for (Rule r : rules)
+				found.add(r.study(s, cache, options));
+			return found;
+		}
+		List<ForkJoinTask<Set<Integer>>> tasks = new ArrayList<ForkJoinTask<Set<Integer>>>(
+				rules.size());
+		ForkJoinPool pool = searchPool(threads);
+		for (final Rule r : rules) {
+			tasks.add(pool.submit(new Callable<Set<Integer>>() {
+				@Override
+				public Set<Integer> call() {
+					return r.study(s, cache, options);
+				}
+			}));
+		}
+		for (ForkJoinTask<Set<Integer>> t : tasks)
+			found.add(t.join());
+		return found;
+	}
+
+	/**
+	 * The start offsets found by studying, in ascending order.
+	 */
+	private static class StudiedOffsets implements Indexer.Offsets {
+		private final OffsetSet offsets;
+		private int i;
+
+		StudiedOffsets(OffsetSet offsets, int start) {
+			this.offsets = offsets;
+			i = start;
+		}
+
+		@Override
+		public int next() {
+			return skip(i);
+		}
+
+		/**
+		 * @param from
+		 *            least offset wanted
+		 * @return the least remaining offset no less than <code>from</code>,
+		 *         or -1 if there is none
+		 */
+		int skip(int from) {
+			int o = offsets.next(Math.max(from, i));
+			i = o == -1 ? Integer.MAX_VALUE : o + 1;
+			return o;
 		}
-		return startOffsets;
 	}
 
 	/**
@@ -1342,7 +2416,15 @@ public class Grammar implements Serializable {
 	/**
 	 * completes rule initialization
 	 */
-	private synchronized void initialRules() {
+	private void initialRules() {
+		if (!frozen)
+			findInitialRules();
+	}
+
+	/**
+	 * Does the work of {@link #initialRules()}.
+	 */
+	private synchronized void findInitialRules() {
 		if (initialRules == null) {
 			Map<String, Boolean> zeroMap = new HashMap<String, Boolean>(rules()
 					.size() * 2);
@@ -1358,7 +2440,10 @@ public class Grammar implements Serializable {
 			terminalRules = new HashSet<String>(rules().size() * 2);
 			root.initialRules(initialRules);
 			for (Rule r : rules()) {
-				if (r instanceof NonterminalRule) {
+				boolean terminal = !(r instanceof NonterminalRule)
+						|| r instanceof ConditionalRule
+						&& ((ConditionalRule) r).fused;
+				if (!terminal) {
 					initialRules.remove(r.uid());
 					if (r.cycle) {
 						r.cycle = r.findLeftCycle(r, new HashSet<Rule>(rules()
@@ -1370,15 +2455,19 @@ public class Grammar implements Serializable {
 		}
 	}
 
-	private synchronized Set<Rule> rules() {
-		if (ruleSet == null) {
-			Set<Rule> set = new HashSet<Rule>();
-			root.subRules(set, new HashSet<Rule>(), false);
-			if (!validated)
-				return set;
-			ruleSet = new HashSet<Rule>(set);
+	private Set<Rule> rules() {
+		if (frozen)
+			return ruleSet;
+		synchronized (this) {
+			if (ruleSet == null) {
+				Set<Rule> set = new HashSet<Rule>();
+				root.subRules(set, new HashSet<Rule>(), false);
+				if (!validated)
+					return set;
+				ruleSet = new HashSet<Rule>(set);
+			}
+			return ruleSet;
 		}
-		return ruleSet;
 	}
 
 	/**
@@ -1389,10 +2478,47 @@ public class Grammar implements Serializable {
 	 * @return clone of given options
 	 */
 	private GlobalState verifyOptions(CharSequence s, Options opt) {
+		return verifyOptions(s, opt, new Session());
+	}
+
+	/**
+	 * @param s
+	 * @param opt
+	 * @param session
+	 *            scratch space for the match, perhaps reused
+	 * @return clone of given options
+	 */
+	private GlobalState verifyOptions(CharSequence s, Options opt,
+			Session session) {
 		if (opt.start() > 0 && opt.start() >= s.length())
 			throw new GrammarException(
 					"start offset specified beyond end of string");
-		return new GlobalState(s, opt);
+		Indexer indexer = opt.indexer;
+		// skipped offsets would not contribute to the rightmost match
+		if (indexer == null && opt.autoIndex && !opt.study
+				&& !opt.keepRightmost) {
+			indexer = derivedIndexer;
+			if (required != null)
+				indexer = new PrefilterIndexer(required, indexer);
+		}
+		return new GlobalState(s, opt, indexer, session);
+	}
+
+	/**
+	 * @return the {@link Indexer} derived from the grammar, if any; see
+	 *         {@link Options#autoIndex()}
+	 */
+	Indexer derivedIndexer() {
+		checkComplete();
+		return derivedIndexer;
+	}
+
+	/**
+	 * @return a literal every match must contain, if one is known
+	 */
+	RequiredLiteral required() {
+		checkComplete();
+		return required;
 	}
 
 	public synchronized void defineRule(String label, Grammar g, String id,
@@ -1513,6 +2639,7 @@ public class Grammar implements Serializable {
 	 * @param c
 	 */
 	public synchronized void defineCondition(String label, Condition c) {
+		checkMutable();
 		boolean cantFind = true;
 		for (Rule r : rules()) {
 			if (!(r instanceof ConditionalRule))
@@ -1522,10 +2649,14 @@ public class Grammar implements Serializable {
 				if (cr.c.getName().equals(label)) {
 					cantFind = false;
 					cr.c = c;
+					cr.test = null;
 				}
 			} else if (cr.c instanceof LogicalCondition) {
 				LogicalCondition lc = (LogicalCondition) cr.c;
-				cantFind &= !lc.replace(label, c);
+				if (lc.replace(label, c)) {
+					cantFind = false;
+					cr.test = null;
+				}
 			}
 		}
 		if (cantFind)
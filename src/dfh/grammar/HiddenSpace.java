@@ -57,7 +57,8 @@ public class HiddenSpace extends ConditionalRule {
 			if (n.zeroWidth())
 				return true;
 			SequenceMatcher sm = (SequenceMatcher) m.master;
-			for (Match c : sm.matched) {
+			for (int i = 0; i < sm.count; i++) {
+				Match c = sm.matched[i];
 				if (c == n)
 					break;
 				if (!c.zeroWidth())
@@ -9,10 +9,11 @@
 package dfh.grammar;
 
 import java.io.Serializable;
-import java.util.List;
 
 /**
- * Finds start indices for matching in a sequence.
+ * Finds start indices for matching in a sequence. Indices are produced lazily
+ * so that matching can begin before the whole sequence has been scanned and
+ * no collection of boxed offsets need ever be built.
  * <p>
  * 
  * @author David F. Houghton - Oct 17, 2012
@@ -20,7 +21,26 @@ import java.util.List;
  */
 public interface Indexer extends Serializable {
 	/**
-	 * Finds start indices for matching in a sequence.
+	 * Cursor over the start indices found by an {@link Indexer}.
+	 * <p>
+	 * 
+	 * @author David F. Houghton - Oct 19, 2026
+	 * 
+	 */
+	public interface Offsets {
+		/**
+		 * Returns the next start index. Indices must be returned in strictly
+		 * ascending order.
+		 * 
+		 * @return the next start index, or -1 if there are no more
+		 */
+		public int next();
+	}
+
+	/**
+	 * Finds start indices for matching in a sequence. Implementations should
+	 * do as little work as possible before the first index is requested and
+	 * should not copy the sequence.
 	 * 
 	 * @param s
 	 *            sequence to find start indices in
@@ -28,7 +48,7 @@ public interface Indexer extends Serializable {
 	 *            earliest possible start index
 	 * @param end
 	 *            index immediately after last possible start index
-	 * @return start indices to use in matching
+	 * @return start indices to use in matching, in ascending order
 	 */
-	public List<Integer> index(CharSequence s, int start, int end);
+	public Offsets index(CharSequence s, int start, int end);
 }
@@ -22,15 +22,33 @@ public abstract class IntegerCondition extends Condition implements
 		Serializable {
 	private static final long serialVersionUID = 8L;
 
+	/**
+	 * Parses the span as {@link Integer#parseInt(String)} would, but without
+	 * creating a string, and tests the result with {@link #passes(int)}. Spans
+	 * that aren't integers or are out of range fail.
+	 */
 	@Override
-	public boolean passes(Match n, Matcher m, CharSequence s) {
-		CharSequence ss = Condition.subsequence(n, s);
-		try {
-			int i = Integer.parseInt(ss.toString());
-			return passes(i);
-		} catch (NumberFormatException e) {
+	public boolean passes(CharSequence s, int start, int end) {
+		if (start == end)
 			return false;
+		int i = start;
+		char c = s.charAt(i);
+		boolean negative = c == '-';
+		if (negative || c == '+') {
+			if (++i == end)
+				return false;
+		}
+		long limit = negative ? -(long) Integer.MIN_VALUE : Integer.MAX_VALUE;
+		long value = 0;
+		for (; i < end; i++) {
+			int d = Character.digit(s.charAt(i), 10);
+			if (d < 0)
+				return false;
+			value = value * 10 + d;
+			if (value > limit)
+				return false;
 		}
+		return passes((int) (negative ? -value : value));
 	}
 
 	/**
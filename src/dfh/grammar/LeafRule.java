@@ -9,7 +9,7 @@
 package dfh.grammar;
 
 import java.io.Serializable;
-import java.util.HashSet;
+import java.util.BitSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.regex.Pattern;
@@ -59,10 +59,9 @@ public class LeafRule extends Rule implements Serializable, Cloneable {
 						LeafRule.this.matchTrace(this, cm.m);
 					return register(cm.m);
 				}
-				java.util.regex.Matcher m = p.matcher(s);
+				java.util.regex.Matcher m = options.session.regex(
+						LeafRule.this, p, options);
 				m.region(offset, options.end());
-				m.useTransparentBounds(true);
-				m.useAnchoringBounds(false);
 				if (m.lookingAt()) {
 					Match n = new Match(LeafRule.this, offset, m.end());
 					cm = new CachedMatch(n);
@@ -98,6 +97,12 @@ public class LeafRule extends Rule implements Serializable, Cloneable {
 	protected final Pattern p;
 	protected final boolean reversible;
 	protected boolean matchesTrivially;
+	/**
+	 * Whether the pattern contains anchors or lookarounds, so it may not mean
+	 * the same thing applied to a {@link ReversedCharSequence}; see
+	 * {@link RegexWidth#directional}.
+	 */
+	boolean directional = true;
 
 	/**
 	 * Generates {@link LeafRule} with given label and {@link Pattern}.
@@ -176,8 +181,10 @@ public class LeafRule extends Rule implements Serializable, Cloneable {
 	public Set<Integer> study(CharSequence s,
 			Map<Integer, CachedMatch>[] cache, GlobalState options) {
 		Map<Integer, CachedMatch> subCache = cache[cacheIndex];
-		Set<Integer> startOffsets = new HashSet<Integer>();
+		Set<Integer> startOffsets = new OffsetSet(options.start);
 		if (subCache.keySet().isEmpty()) {
+			// not the session's matcher: rules may be studied concurrently,
+			// and reversed rules are studied against a reversed copy
 			java.util.regex.Matcher m = p.matcher(s);
 			m.useAnchoringBounds(false);
 			m.useTransparentBounds(true);
@@ -214,6 +221,19 @@ public class LeafRule extends Rule implements Serializable, Cloneable {
 		return true;
 	}
 
+	@Override
+	protected int[] width(Map<String, int[]> cache) {
+		RegexWidth w = new RegexWidth(p);
+		directional = w.directional;
+		return setWidth(cache, w.min, w.max);
+	}
+
+	@Override
+	StartSet startSet(Map<String, StartSet> cache) {
+		BitSet chars = new RegexFirst(p).chars;
+		return chars == null ? null : new StartSet(chars);
+	}
+
 	@Override
 	public Rule deepCopy(Label l, String nameBase, Map<String, Rule> cycleMap,
 			Set<String> knownLabels, Set<String> knownConditions) {
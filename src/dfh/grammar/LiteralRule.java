@@ -9,7 +9,7 @@
 package dfh.grammar;
 
 import java.io.Serializable;
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
 
@@ -143,7 +143,7 @@ public class LiteralRule extends Rule implements Serializable {
 	public Set<Integer> study(CharSequence s,
 			Map<Integer, CachedMatch>[] cache, GlobalState options) {
 		Map<Integer, CachedMatch> subCache = cache[cacheIndex];
-		Set<Integer> startOffsets = new HashSet<Integer>();
+		Set<Integer> startOffsets = new OffsetSet(options.start);
 		if (subCache.isEmpty()) {
 			int index, o = 0;
 			String string = s.subSequence(options.start, options.end())
@@ -174,6 +174,25 @@ public class LiteralRule extends Rule implements Serializable {
 		return b;
 	}
 
+	@Override
+	protected int[] width(Map<String, int[]> cache) {
+		return setWidth(cache, literal.length(), literal.length());
+	}
+
+	@Override
+	StartSet startSet(Map<String, StartSet> cache) {
+		return new StartSet(literal);
+	}
+
+	@Override
+	Map<String, RequiredLiteral> required(
+			Map<String, Map<String, RequiredLiteral>> cache) {
+		if (literal.length() == 0)
+			return Collections.emptyMap();
+		return Collections.singletonMap(literal, new RequiredLiteral(literal,
+				0, 0));
+	}
+
 	@Override
 	public Rule deepCopy(Label l, String nameBase, Map<String, Rule> cycleMap,
 			Set<String> knownLabels, Set<String> knownConditions) {
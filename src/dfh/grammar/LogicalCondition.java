@@ -209,6 +209,18 @@ public abstract class LogicalCondition extends Condition implements
 		return visibleConditions > 0;
 	}
 
+	/**
+	 * A logical combination of conditions is pure if all its constituents are.
+	 */
+	@Override
+	public boolean pure() {
+		for (Condition c : subconditions) {
+			if (!c.pure())
+				return false;
+		}
+		return true;
+	}
+
 	@Override
 	Condition copy(String namebase, Set<String> knownConditions) {
 		List<Condition> copies = new ArrayList<Condition>(subconditions.length);
@@ -0,0 +1,47 @@
+/*
+ * dfh.grammar -- a recursive descent parser library for Java
+ *
+ * Copyright (C) 2012 David F. Houghton
+ *
+ * This software is licensed under the LGPL. Please see accompanying NOTICE file
+ * and lgpl.txt.
+ */
+package dfh.grammar;
+
+/**
+ * Thrown when a match exceeds the limits set by {@link Options#maxSteps()} or
+ * {@link Options#deadline()}, or, as a {@link MatchCancelledException}, when it
+ * is cancelled. The {@link Matcher} that threw it is spent and should be
+ * discarded.
+ *
+ * @author David F. Houghton - Oct 19, 2026
+ *
+ */
+public class MatchAbortedException extends GrammarException {
+	private static final long serialVersionUID = 1L;
+	private final transient Match rightmost;
+	private final long steps;
+
+	MatchAbortedException(String message, Match rightmost, long steps) {
+		super(message);
+		this.rightmost = rightmost;
+		this.steps = steps;
+	}
+
+	/**
+	 * @return the rightmost match found before matching was aborted, if
+	 *         {@link Options#keepRightmost()} is set; otherwise {@code null}
+	 */
+	public Match rightmostMatch() {
+		return rightmost;
+	}
+
+	/**
+	 * @return number of steps taken before matching was aborted; where
+	 *         {@link Options#parallelism()} divides the search into chunks,
+	 *         the steps taken in the chunk that was aborted
+	 */
+	public long steps() {
+		return steps;
+	}
+}
@@ -39,6 +39,13 @@ public class MatchCache implements Map<Integer, CachedMatch> {
 		cache = new CachedMatch[size + 1];
 	}
 
+	/**
+	 * @return the greatest offset this cache can hold
+	 */
+	int limit() {
+		return cache.length - 1;
+	}
+
 	@Override
 	public void clear() {
 		Arrays.fill(cache, null);
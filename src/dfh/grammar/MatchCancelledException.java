@@ -0,0 +1,25 @@
+/*
+ * dfh.grammar -- a recursive descent parser library for Java
+ *
+ * Copyright (C) 2012 David F. Houghton
+ *
+ * This software is licensed under the LGPL. Please see accompanying NOTICE file
+ * and lgpl.txt.
+ */
+package dfh.grammar;
+
+/**
+ * Thrown when the thread matching is interrupted, if
+ * {@link Options#interruptible()}, or when the
+ * {@link Options#cancellation()} token signals cancellation.
+ *
+ * @author David F. Houghton - Oct 19, 2026
+ *
+ */
+public class MatchCancelledException extends MatchAbortedException {
+	private static final long serialVersionUID = 1L;
+
+	MatchCancelledException(String message, Match rightmost, long steps) {
+		super(message, rightmost, steps);
+	}
+}
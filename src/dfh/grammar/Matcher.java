@@ -10,6 +10,8 @@ package dfh.grammar;
 
 import java.util.Iterator;
 
+import dfh.grammar.SequenceRule.SequenceMatcher;
+
 /**
  * An object associated with a {@link Rule} that can iterate over and return all
  * the possible parse trees meeting the matching conditions (pattern and start
@@ -42,6 +44,12 @@ public abstract class Matcher {
 	 * Rightmost match found by this {@link Matcher} or any of its descendants.
 	 */
 	protected Match rightmost = null;
+	/**
+	 * The matcher for the body of the nearest enclosing rule definition, which
+	 * holds the captures {@link UpLevelBackReferenceRule uplevel back
+	 * references} refer to.
+	 */
+	final SequenceMatcher scope;
 
 	/**
 	 * Generate a {@link Matcher} with the given state.
@@ -54,6 +62,7 @@ public abstract class Matcher {
 		this.master = master;
 		this.options = master.options;
 		this.s = options.seq();
+		this.scope = master.innerScope();
 	}
 
 	/**
@@ -68,6 +77,14 @@ public abstract class Matcher {
 		this.offset = offset;
 		this.master = master;
 		this.options = options;
+		this.scope = master == null ? null : master.innerScope();
+	}
+
+	/**
+	 * @return the {@link #scope} of the matchers this matcher creates
+	 */
+	SequenceMatcher innerScope() {
+		return scope;
 	}
 
 	/**
@@ -126,6 +143,8 @@ public abstract class Matcher {
 			rightmost = m;
 			if (master != null)
 				master.register(m);
+			else
+				options.session.register(m);
 		}
 		return m;
 	}
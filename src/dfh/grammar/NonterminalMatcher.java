@@ -46,6 +46,11 @@ public abstract class NonterminalMatcher extends Matcher {
 	 * {@link Rule} that generated this {@link Matcher}.
 	 */
 	protected final Rule rule;
+	/**
+	 * If not {@code null}, the least end offset of any match of interest. See
+	 * {@link Floor}.
+	 */
+	protected Floor floor;
 
 	/**
 	 * Constructs non-terminal matcher with given state.
@@ -78,11 +83,16 @@ public abstract class NonterminalMatcher extends Matcher {
 				rule.matchTrace(this, null);
 			return null;
 		}
-		if (next == null && cycleCheck())
+		if (next == null && cycleCheck()) {
+			options.session.step();
 			fetchNext();
+		}
 		if (cm == null) {
-			cm = next == null ? CachedMatch.MISMATCH : CachedMatch.MATCH;
-			subCache.put(offset, cm);
+			// under a floor we may have pruned away real matches
+			if (next != null)
+				subCache.put(offset, CachedMatch.MATCH);
+			else if (floor == null)
+				subCache.put(offset, CachedMatch.MISMATCH);
 		}
 		Match n = next;
 		next = null;
@@ -97,11 +107,37 @@ public abstract class NonterminalMatcher extends Matcher {
 			return false;
 		if (CachedMatch.MISMATCH.equals(subCache.get(offset)))
 			return false;
-		if (next == null && cycleCheck())
+		if (next == null && cycleCheck()) {
+			options.session.step();
 			fetchNext();
+		}
 		return next != null;
 	}
 
+	/**
+	 * Restricts this matcher to matches ending at or after the given
+	 * {@link Floor}. Subclasses that can prune with this information, or that
+	 * can delegate it to the matchers responsible for the ends of their
+	 * matches, should consult {@link #floor}.
+	 * 
+	 * @param floor
+	 */
+	void setFloor(Floor floor) {
+		this.floor = floor;
+	}
+
+	/**
+	 * Passes this matcher's {@link Floor}, if any, to a matcher whose matches
+	 * end where this matcher's do.
+	 * 
+	 * @param m
+	 *            sub-matcher
+	 */
+	protected void delegateFloor(Matcher m) {
+		if (floor != null && m instanceof NonterminalMatcher)
+			((NonterminalMatcher) m).setFloor(floor);
+	}
+
 	/**
 	 * @return whether we seem to be in a non-progressing recursive loop
 	 */
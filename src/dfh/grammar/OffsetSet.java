@@ -0,0 +1,130 @@
+/*
+ * dfh.grammar -- a recursive descent parser library for Java
+ *
+ * Copyright (C) 2012 David F. Houghton
+ *
+ * This software is licensed under the LGPL. Please see accompanying NOTICE file
+ * and lgpl.txt.
+ */
+package dfh.grammar;
+
+import java.util.AbstractSet;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A set of offsets into a character sequence held as a {@link BitSet} relative
+ * to some base offset, ordinarily the start of the region being matched. It
+ * costs a bit per character of the region where a {@link java.util.HashSet} of
+ * {@link Integer Integers} costs dozens of bytes per member. Iteration is in
+ * ascending order.
+ *
+ * @author David F. Houghton - Oct 19, 2026
+ *
+ */
+class OffsetSet extends AbstractSet<Integer> {
+	private BitSet bits = new BitSet();
+	private int base;
+	private int size = 0;
+
+	/**
+	 * @param base
+	 *            least offset expected; lesser offsets are accepted but require
+	 *            copying the set
+	 */
+	OffsetSet(int base) {
+		this.base = base;
+	}
+
+	@Override
+	public boolean add(Integer offset) {
+		int i = offset;
+		if (i < base)
+			rebase(i);
+		i -= base;
+		if (bits.get(i))
+			return false;
+		bits.set(i);
+		size++;
+		return true;
+	}
+
+	/**
+	 * Moves the base down to accommodate a lesser offset.
+	 */
+	private void rebase(int newBase) {
+		int shift = base - newBase;
+		BitSet b = new BitSet(bits.length() + shift);
+		for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1))
+			b.set(i + shift);
+		bits = b;
+		base = newBase;
+	}
+
+	@Override
+	public boolean addAll(Collection<? extends Integer> c) {
+		if (c instanceof OffsetSet) {
+			OffsetSet os = (OffsetSet) c;
+			if (os.base == base) {
+				int before = size;
+				bits.or(os.bits);
+				size = bits.cardinality();
+				return size > before;
+			}
+		}
+		return super.addAll(c);
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		if (o instanceof Integer) {
+			int i = (Integer) o - base;
+			return i >= 0 && bits.get(i);
+		}
+		return false;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @param from
+	 *            least offset sought
+	 * @return least member no less than <code>from</code>, or -1 if there is
+	 *         none
+	 */
+	int next(int from) {
+		int i = bits.nextSetBit(Math.max(from - base, 0));
+		return i == -1 ? -1 : i + base;
+	}
+
+	@Override
+	public Iterator<Integer> iterator() {
+		return new Iterator<Integer>() {
+			private int i = OffsetSet.this.next(base);
+
+			@Override
+			public boolean hasNext() {
+				return i != -1;
+			}
+
+			@Override
+			public Integer next() {
+				if (i == -1)
+					throw new NoSuchElementException();
+				int o = i;
+				i = OffsetSet.this.next(i + 1);
+				return o;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+}
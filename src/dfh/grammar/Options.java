@@ -9,6 +9,9 @@
 package dfh.grammar;
 
 import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.function.BooleanSupplier;
 import java.util.HashMap;
 import java.util.TreeMap;
 
@@ -115,6 +118,109 @@ public class Options implements Cloneable {
 	 * {@link HashMap} is used, otherwise, a {@link MatchCache}.
 	 */
 	public static final int LONG_STRING_LENGTH = 100000;
+	/**
+	 * Whether, when no {@link Indexer} is given and the sequence is not
+	 * studied, the {@link Grammar} should use an {@link Indexer} it derives
+	 * from the literals and character classes that may begin a match, and
+	 * skip regions of the sequence lacking a literal every match must
+	 * contain. Ignored when keeping the rightmost match.
+	 */
+	public static final boolean AUTO_INDEX = true;
+	/**
+	 * Number of threads {@link Grammar#find(CharSequence, Options)} may use.
+	 * If the sequence is {@link #study() studied}, the terminal rules are
+	 * divided among them: each scans the entire region to be matched, so with
+	 * many such rules and long sequences studying benefits from more than one
+	 * thread. Otherwise, if the region is longer than {@link #chunkSize()}, it
+	 * is divided into chunks and the matches beginning in each are found on a
+	 * separate thread; the matches are the same, and in the same order, as
+	 * would be found by a single thread, though if {@link #keepRightmost()} is
+	 * set the search is not divided. With the default, everything takes place
+	 * in the calling thread.
+	 * <p>
+	 * {@link Grammar#findAll(Iterable, Options, java.util.concurrent.Executor)}
+	 * keeps up to twice this many sequences in the hands of its executor.
+	 */
+	public static final int PARALLELISM = 1;
+	/**
+	 * Number of start offsets in each chunk of a region searched by more than
+	 * one thread; see {@link #PARALLELISM}.
+	 */
+	public static final int CHUNK_SIZE = 1 << 16;
+	/**
+	 * Whether the {@link Matcher} returned by {@link Grammar} serializes calls
+	 * to {@link Matcher#match()}, so that it may be shared among threads. A
+	 * {@link Matcher} obtained with this option off must be confined to a
+	 * single thread; in exchange it takes no lock for each match it returns.
+	 */
+	public static final boolean SYNCHRONIZE = true;
+	/**
+	 * Number of steps -- attempts by non-terminal matchers to find their next
+	 * match -- between calls to the {@link #yieldHook() yield hook}. Matching
+	 * never blocks, so a long match holds its thread until it is done; on a
+	 * virtual thread it holds the carrier thread as well, starving the other
+	 * virtual threads it might serve. Yielding every so often shares the
+	 * carrier among them. If 0, the hook is never called.
+	 */
+	public static final int YIELD_QUANTUM = 1 << 12;
+	/**
+	 * Greatest number of steps -- attempts by non-terminal matchers to find
+	 * their next match -- a {@link Matcher} may take before it throws a
+	 * {@link MatchAbortedException}. This bounds the work an adversarial
+	 * sequence can cause by provoking catastrophic backtracking. If 0, there
+	 * is no limit.
+	 * <p>
+	 * Steps are counted by thread: when {@link #parallelism()} divides a
+	 * search into chunks, each chunk has a budget of its own, as does each
+	 * sequence searched by
+	 * {@link Grammar#findAll(Iterable, Options, java.util.concurrent.Executor)}.
+	 */
+	public static final long MAX_STEPS = 0;
+	/**
+	 * Whether a {@link Matcher} polls the interrupt flag of its thread every
+	 * thousand or so steps, throwing a {@link MatchCancelledException} if it
+	 * is set. This lets <code>Future.cancel(true)</code> stop a runaway match.
+	 * The flag is left set.
+	 */
+	public static final boolean INTERRUPTIBLE = true;
+	/**
+	 * Default yield hook: calls {@link Thread#yield()} if the current thread
+	 * is virtual and otherwise does nothing. Virtual threads are detected by
+	 * reflection, so on JVMs without them the hook never yields.
+	 */
+	public static final Runnable YIELD_HOOK = new Runnable() {
+		private final Method isVirtual = isVirtualMethod();
+
+		@Override
+		public void run() {
+			if (isVirtual == null)
+				return;
+			try {
+				if ((Boolean) isVirtual.invoke(Thread.currentThread()))
+					Thread.yield();
+			} catch (Exception e) {
+				// Thread.isVirtual() is public and throws nothing
+			}
+		}
+
+		@Override
+		public String toString() {
+			return "YIELD_HOOK";
+		}
+	};
+
+	/**
+	 * @return <code>Thread.isVirtual()</code>, or {@code null} if this JVM
+	 *         lacks virtual threads
+	 */
+	private static Method isVirtualMethod() {
+		try {
+			return Thread.class.getMethod("isVirtual");
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+
 	boolean allowOverlap = ALLOW_OVERLAP;
 	boolean study = STUDY;
 	boolean longestMatch = LONGEST_MATCH;
@@ -126,6 +232,16 @@ public class Options implements Cloneable {
 	int longStringLength = LONG_STRING_LENGTH;
 	int maxRecursionDepth = MAX_RECURSION_DEPTH;
 	Indexer indexer;
+	boolean autoIndex = AUTO_INDEX;
+	int parallelism = PARALLELISM;
+	int chunkSize = CHUNK_SIZE;
+	boolean synchronize = SYNCHRONIZE;
+	int yieldQuantum = YIELD_QUANTUM;
+	Runnable yieldHook = YIELD_HOOK;
+	long maxSteps = MAX_STEPS;
+	Duration deadline;
+	boolean interruptible = INTERRUPTIBLE;
+	BooleanSupplier cancellation;
 
 	/**
 	 * Gets {@link Indexer} to be used to accelerate matching.
@@ -148,6 +264,24 @@ public class Options implements Cloneable {
 		return this;
 	}
 
+	/**
+	 * @return see {@link #AUTO_INDEX}
+	 */
+	public boolean autoIndex() {
+		return autoIndex;
+	}
+
+	/**
+	 * See {@link #AUTO_INDEX}
+	 * 
+	 * @param autoIndex
+	 * @return self to allow chaining of methods
+	 */
+	public Options autoIndex(boolean autoIndex) {
+		this.autoIndex = autoIndex;
+		return this;
+	}
+
 	/**
 	 * @return see {@link #MAX_RECURSION_DEPTH}
 	 */
@@ -166,6 +300,198 @@ public class Options implements Cloneable {
 		return this;
 	}
 
+	/**
+	 * @return see {@link #PARALLELISM}
+	 */
+	public int parallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * See {@link #PARALLELISM}
+	 * 
+	 * @param parallelism
+	 *            number of threads to use when studying
+	 * @return self to allow chaining of methods
+	 */
+	public Options parallelism(int parallelism) {
+		if (parallelism < 1)
+			throw new GrammarException("parallelism must be positive");
+		this.parallelism = parallelism;
+		return this;
+	}
+
+	/**
+	 * @return see {@link #CHUNK_SIZE}
+	 */
+	public int chunkSize() {
+		return chunkSize;
+	}
+
+	/**
+	 * See {@link #CHUNK_SIZE}
+	 * 
+	 * @param chunkSize
+	 *            number of start offsets searched by a thread at a time
+	 * @return self to allow chaining of methods
+	 */
+	public Options chunkSize(int chunkSize) {
+		if (chunkSize < 1)
+			throw new GrammarException("chunkSize must be positive");
+		this.chunkSize = chunkSize;
+		return this;
+	}
+
+	/**
+	 * @return see {@link #SYNCHRONIZE}
+	 */
+	public boolean synchronize() {
+		return synchronize;
+	}
+
+	/**
+	 * See {@link #SYNCHRONIZE}
+	 * 
+	 * @param synchronize
+	 *            whether the {@link Matcher} may be shared among threads
+	 * @return self to allow chaining of methods
+	 */
+	public Options synchronize(boolean synchronize) {
+		this.synchronize = synchronize;
+		return this;
+	}
+
+	/**
+	 * @return see {@link #YIELD_QUANTUM}
+	 */
+	public int yieldQuantum() {
+		return yieldQuantum;
+	}
+
+	/**
+	 * See {@link #YIELD_QUANTUM}
+	 * 
+	 * @param yieldQuantum
+	 *            steps between calls to the yield hook; 0 for none
+	 * @return self to allow chaining of methods
+	 */
+	public Options yieldQuantum(int yieldQuantum) {
+		if (yieldQuantum < 0)
+			throw new GrammarException("yieldQuantum cannot be negative");
+		this.yieldQuantum = yieldQuantum;
+		return this;
+	}
+
+	/**
+	 * @return see {@link #YIELD_HOOK}
+	 */
+	public Runnable yieldHook() {
+		return yieldHook;
+	}
+
+	/**
+	 * Sets the code run every {@link #yieldQuantum()} steps of a match. See
+	 * {@link #YIELD_HOOK}.
+	 * 
+	 * @param yieldHook
+	 *            code to run; {@code null} for none
+	 * @return self to allow chaining of methods
+	 */
+	public Options yieldHook(Runnable yieldHook) {
+		this.yieldHook = yieldHook;
+		return this;
+	}
+
+	/**
+	 * @return see {@link #MAX_STEPS}
+	 */
+	public long maxSteps() {
+		return maxSteps;
+	}
+
+	/**
+	 * See {@link #MAX_STEPS}
+	 * 
+	 * @param maxSteps
+	 *            greatest number of steps a match may take; 0 for no limit
+	 * @return self to allow chaining of methods
+	 */
+	public Options maxSteps(long maxSteps) {
+		if (maxSteps < 0)
+			throw new GrammarException("maxSteps cannot be negative");
+		this.maxSteps = maxSteps;
+		return this;
+	}
+
+	/**
+	 * @return time allowed each {@link Matcher}; {@code null} if there is no
+	 *         limit
+	 */
+	public Duration deadline() {
+		return deadline;
+	}
+
+	/**
+	 * Sets the time allowed each {@link Matcher}, counted from its creation,
+	 * after which it throws a {@link MatchAbortedException}. The clock is
+	 * consulted only every thousand or so steps, so the limit is approximate.
+	 * When {@link #parallelism()} divides a search into chunks, all the chunks
+	 * share the deadline of the {@link Matcher}. Each sequence searched by
+	 * {@link Grammar#findAll(Iterable, Options, java.util.concurrent.Executor)}
+	 * has its own, counted from when its search begins.
+	 * 
+	 * @param deadline
+	 *            time allowed; {@code null} for no limit
+	 * @return self to allow chaining of methods
+	 */
+	public Options deadline(Duration deadline) {
+		if (deadline != null && deadline.isNegative())
+			throw new GrammarException("deadline cannot be negative");
+		this.deadline = deadline;
+		return this;
+	}
+
+	/**
+	 * @return see {@link #INTERRUPTIBLE}
+	 */
+	public boolean interruptible() {
+		return interruptible;
+	}
+
+	/**
+	 * See {@link #INTERRUPTIBLE}
+	 * 
+	 * @param interruptible
+	 *            whether matching stops when the thread is interrupted
+	 * @return self to allow chaining of methods
+	 */
+	public Options interruptible(boolean interruptible) {
+		this.interruptible = interruptible;
+		return this;
+	}
+
+	/**
+	 * @return the token polled for cancellation, if any
+	 */
+	public BooleanSupplier cancellation() {
+		return cancellation;
+	}
+
+	/**
+	 * Sets a token a {@link Matcher} polls every thousand or so steps; once it
+	 * returns {@code true}, the {@link Matcher} throws a
+	 * {@link MatchCancelledException}. Unlike the interrupt flag, the token
+	 * is seen by every thread working on a match.
+	 * 
+	 * @param cancellation
+	 *            cancellation token; {@code null} for none
+	 * @return self to allow chaining of methods
+	 */
+	public Options cancellation(BooleanSupplier cancellation) {
+		this.cancellation = cancellation;
+		return this;
+	}
+
 	PrintStream trace;
 
 	/**
@@ -195,16 +521,27 @@ public class Options implements Cloneable {
 	 */
 	public Options(Options o) {
 		this.allowOverlap = o.allowOverlap;
+		this.autoIndex = o.autoIndex;
+		this.chunkSize = o.chunkSize;
 		this.end = o.end;
 		this.fatMemory = o.fatMemory;
+		this.indexer = o.indexer;
 		this.keepRightmost = o.keepRightmost;
 		this.leanMemory = o.leanMemory;
 		this.longestMatch = o.longestMatch;
 		this.longStringLength = o.longStringLength;
 		this.maxRecursionDepth = o.maxRecursionDepth;
+		this.parallelism = o.parallelism;
 		this.start = o.start;
 		this.study = o.study;
+		this.synchronize = o.synchronize;
 		this.trace = o.trace;
+		this.yieldHook = o.yieldHook;
+		this.yieldQuantum = o.yieldQuantum;
+		this.maxSteps = o.maxSteps;
+		this.deadline = o.deadline;
+		this.interruptible = o.interruptible;
+		this.cancellation = o.cancellation;
 	}
 
 	/**
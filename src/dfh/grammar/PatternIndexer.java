@@ -8,8 +8,6 @@
  */
 package dfh.grammar;
 
-import java.util.LinkedList;
-import java.util.List;
 import java.util.regex.Pattern;
 
 /**
@@ -38,15 +36,26 @@ public class PatternIndexer implements Indexer {
 	 * @see dfh.grammar.Indexer#index(java.lang.CharSequence, int, int)
 	 */
 	@Override
-	public List<Integer> index(CharSequence s, int start, int end) {
-		java.util.regex.Matcher m = p.matcher(s);
+	public Offsets index(CharSequence s, int start, final int end) {
+		final java.util.regex.Matcher m = p.matcher(s);
 		m.region(start, end);
-		List<Integer> list = new LinkedList<Integer>();
-		while (m.find()) {
-			list.add(m.start());
-			m.region(m.start() + 1, end);
-		}
-		return list;
+		return new Offsets() {
+			private boolean done = false;
+
+			@Override
+			public int next() {
+				if (done || !m.find()) {
+					done = true;
+					return -1;
+				}
+				int index = m.start();
+				if (index + 1 > end)
+					done = true;
+				else
+					m.region(index + 1, end);
+				return index;
+			}
+		};
 	}
 
 }
@@ -0,0 +1,92 @@
+/*
+ * dfh.grammar -- a recursive descent parser library for Java
+ *
+ * Copyright (C) 2012 David F. Houghton
+ *
+ * This software is licensed under the LGPL. Please see accompanying NOTICE file
+ * and lgpl.txt.
+ */
+package dfh.grammar;
+
+/**
+ * {@link Indexer} that discards start offsets too far from any occurrence of
+ * a literal every match must contain. It searches for the literal
+ * only as candidate offsets pass the last occurrence found, so whole regions
+ * without it are skipped without any {@link Matcher} being created; once no
+ * occurrence remains, no more offsets are produced.
+ *
+ * @author David F. Houghton - Oct 19, 2026
+ *
+ */
+class PrefilterIndexer implements Indexer {
+	private static final long serialVersionUID = 1L;
+	private final RequiredLiteral required;
+	/**
+	 * Source of candidate offsets; if {@code null}, every offset is a
+	 * candidate.
+	 */
+	private final Indexer inner;
+
+	PrefilterIndexer(RequiredLiteral required, Indexer inner) {
+		this.required = required;
+		this.inner = inner;
+	}
+
+	@Override
+	public String toString() {
+		return PrefilterIndexer.class.getSimpleName() + '(' + required
+				+ (inner == null ? "" : ", " + inner) + ')';
+	}
+
+	@Override
+	public Offsets index(final CharSequence s, final int start, final int end) {
+		final Offsets candidates = inner == null ? null : inner.index(s,
+				start, end);
+		return new Offsets() {
+			/**
+			 * Next candidate when there is no inner indexer.
+			 */
+			private int i = start;
+			/**
+			 * The first occurrence of the literal at or after the last offset
+			 * searched from.
+			 */
+			private int found = -1;
+			/**
+			 * Least offset a candidate may have and still precede an
+			 * occurrence closely enough.
+			 */
+			private int floor = start;
+
+			@Override
+			public int next() {
+				while (true) {
+					int candidate;
+					if (candidates == null) {
+						candidate = Math.max(i, floor);
+						if (candidate >= end)
+							return -1;
+						i = candidate + 1;
+					} else {
+						do
+							candidate = candidates.next();
+						while (candidate != -1 && candidate < floor);
+						if (candidate == -1)
+							return -1;
+					}
+					int from = candidate + required.minBefore;
+					if (found < from) {
+						found = from > end ? -1 : required.find(s, from, end);
+						if (found == -1) {
+							i = end;
+							return -1;
+						}
+					}
+					if (found - candidate <= required.maxBefore)
+						return candidate;
+					floor = found - required.maxBefore;
+				}
+			}
+		};
+	}
+}
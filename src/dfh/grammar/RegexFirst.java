@@ -0,0 +1,403 @@
+/*
+ * dfh.grammar -- a recursive descent parser library for Java
+ *
+ * Copyright (C) 2012 David F. Houghton
+ *
+ * This software is licensed under the LGPL. Please see accompanying NOTICE file
+ * and lgpl.txt.
+ */
+package dfh.grammar;
+
+import java.util.BitSet;
+import java.util.regex.Pattern;
+
+/**
+ * Conservative static analysis of the characters that may begin a match of a
+ * {@link Pattern}. Like {@link RegexWidth} it understands only the common
+ * subset of regular expression syntax -- literals, simple escapes, character
+ * classes without nesting or intersection, groups, lookarounds, alternation,
+ * and quantifiers. Anything else, including {@code .}, negated shorthand
+ * classes like {@code \W}, Unicode properties, inline flags, and Unicode case
+ * folding, makes it give up, which is always safe.
+ * <p>
+ * Case-insensitive patterns are handled by adding the other case of every
+ * ASCII letter, which is what {@link Pattern#CASE_INSENSITIVE} means without
+ * {@link Pattern#UNICODE_CASE}.
+ *
+ * @author David F. Houghton - Oct 19, 2026
+ *
+ */
+class RegexFirst {
+	/**
+	 * Signals syntax we don't analyze.
+	 */
+	@SuppressWarnings("serial")
+	private static class Bail extends RuntimeException {
+		@Override
+		public synchronized Throwable fillInStackTrace() {
+			return this;
+		}
+	}
+
+	private static final Bail BAIL = new Bail();
+
+	/**
+	 * Characters that may begin a match of some part of the pattern and
+	 * whether that part may match the empty string, in which case whatever
+	 * follows it may begin the match as well.
+	 */
+	private static class First {
+		final BitSet chars = new BitSet();
+		boolean nullable;
+
+		First(boolean nullable) {
+			this.nullable = nullable;
+		}
+
+		First(char c) {
+			chars.set(c);
+		}
+	}
+
+	/**
+	 * Characters that may begin a match; {@code null} if the analysis failed
+	 * or the pattern may match the empty string.
+	 */
+	final BitSet chars;
+
+	private final String pattern;
+	private int i = 0;
+
+	RegexFirst(Pattern p) {
+		pattern = p.pattern();
+		int flags = p.flags();
+		BitSet set;
+		if ((flags & (Pattern.COMMENTS | Pattern.CANON_EQ
+				| Pattern.UNICODE_CHARACTER_CLASS)) != 0
+				|| (flags & Pattern.CASE_INSENSITIVE) != 0
+				&& (flags & Pattern.UNICODE_CASE) != 0)
+			set = null;
+		else if ((flags & Pattern.LITERAL) == Pattern.LITERAL) {
+			if (pattern.length() == 0)
+				set = null;
+			else {
+				set = new BitSet();
+				set.set(pattern.charAt(0));
+			}
+		} else {
+			try {
+				First f = alternation();
+				set = i < pattern.length() || f.nullable ? null : f.chars;
+			} catch (Bail b) {
+				set = null;
+			} catch (IndexOutOfBoundsException e) {
+				set = null;
+			} catch (NumberFormatException e) {
+				set = null;
+			}
+		}
+		if (set != null && (flags & Pattern.CASE_INSENSITIVE) != 0) {
+			for (char c = 'a'; c <= 'z'; c++) {
+				char u = Character.toUpperCase(c);
+				if (set.get(c) || set.get(u)) {
+					set.set(c);
+					set.set(u);
+				}
+			}
+		}
+		chars = set;
+	}
+
+	private First alternation() {
+		First f = sequence();
+		while (i < pattern.length() && pattern.charAt(i) == '|') {
+			i++;
+			First f2 = sequence();
+			f.chars.or(f2.chars);
+			f.nullable |= f2.nullable;
+		}
+		return f;
+	}
+
+	private First sequence() {
+		First f = new First(true);
+		while (i < pattern.length()) {
+			char c = pattern.charAt(i);
+			if (c == '|' || c == ')')
+				break;
+			First a = atom();
+			quantify(a);
+			// keep parsing after the first required atom to find the end
+			if (f.nullable) {
+				f.chars.or(a.chars);
+				f.nullable = a.nullable;
+			}
+		}
+		return f;
+	}
+
+	private First atom() {
+		char c = pattern.charAt(i++);
+		switch (c) {
+		case '(':
+			return group();
+		case '[':
+			return characterClass();
+		case '^':
+		case '$':
+			return new First(true);
+		case '\\':
+			return escape();
+		case '.':
+		case '*':
+		case '+':
+		case '?':
+		case '{':
+			throw BAIL;
+		default:
+			if (Character.isHighSurrogate(c) && i < pattern.length()
+					&& Character.isLowSurrogate(pattern.charAt(i)))
+				i++;
+			return new First(c);
+		}
+	}
+
+	private First group() {
+		boolean zeroWidth = false;
+		if (pattern.charAt(i) == '?') {
+			i++;
+			char c = pattern.charAt(i);
+			if (c == ':' || c == '>') {
+				i++;
+			} else if (c == '=' || c == '!') {
+				i++;
+				zeroWidth = true;
+			} else if (c == '<') {
+				i++;
+				c = pattern.charAt(i);
+				if (c == '=' || c == '!') {
+					i++;
+					zeroWidth = true;
+				} else {
+					// named group
+					int close = pattern.indexOf('>', i);
+					if (close == -1)
+						throw BAIL;
+					i = close + 1;
+				}
+			} else
+				// inline flags
+				throw BAIL;
+		}
+		First f = alternation();
+		if (pattern.charAt(i++) != ')')
+			throw BAIL;
+		return zeroWidth ? new First(true) : f;
+	}
+
+	private First characterClass() {
+		First f = new First(false);
+		boolean negated = false;
+		if (pattern.charAt(i) == '^') {
+			negated = true;
+			i++;
+		}
+		boolean first = true;
+		while (true) {
+			char c = pattern.charAt(i++);
+			if (c == ']' && !first)
+				break;
+			first = false;
+			if (c == '[' || c == '&' && pattern.charAt(i) == '&')
+				throw BAIL; // unions and intersections
+			int low;
+			if (c == '\\') {
+				low = classEscape(f.chars);
+				if (low == -1)
+					continue;
+			} else if (Character.isSurrogate(c))
+				throw BAIL;
+			else
+				low = c;
+			int high = low;
+			if (pattern.charAt(i) == '-' && pattern.charAt(i + 1) != ']') {
+				i++;
+				c = pattern.charAt(i++);
+				if (c == '\\') {
+					high = classEscape(null);
+				} else if (c == '[' || Character.isSurrogate(c))
+					throw BAIL;
+				else
+					high = c;
+				if (high < low)
+					throw BAIL;
+			}
+			f.chars.set(low, high + 1);
+		}
+		if (negated)
+			f.chars.flip(0, Character.MAX_VALUE + 1);
+		return f;
+	}
+
+	/**
+	 * Interprets an escape in a character class.
+	 *
+	 * @param set
+	 *            set to which to add the members of shorthand classes such as
+	 *            {@code \d}; if {@code null}, shorthand classes are an error
+	 * @return the escaped character, or -1 if a shorthand class was added
+	 */
+	private int classEscape(BitSet set) {
+		char c = pattern.charAt(i);
+		if (c == 'd' || c == 'w' || c == 's') {
+			if (set == null)
+				throw BAIL;
+			i++;
+			shorthand(c, set);
+			return -1;
+		}
+		return escapedCharacter();
+	}
+
+	private First escape() {
+		char c = pattern.charAt(i);
+		switch (c) {
+		case 'b':
+		case 'B':
+			i++;
+			if (i < pattern.length() && pattern.charAt(i) == '{')
+				throw BAIL;
+			return new First(true);
+		case 'A':
+		case 'z':
+		case 'Z':
+		case 'G':
+			i++;
+			return new First(true);
+		case 'd':
+		case 'w':
+		case 's': {
+			i++;
+			First f = new First(false);
+			shorthand(c, f.chars);
+			return f;
+		}
+		case 'Q': {
+			i++;
+			int e = pattern.indexOf("\\E", i);
+			int n = (e == -1 ? pattern.length() : e) - i;
+			// a quantifier after \Q...\E applies only to the last character
+			if (n == 0 || n > 1 && e != -1 && e + 2 < pattern.length()
+					&& "?*+{".indexOf(pattern.charAt(e + 2)) > -1)
+				throw BAIL;
+			First f = new First(pattern.charAt(i));
+			i = e == -1 ? pattern.length() : e + 2;
+			return f;
+		}
+		default:
+			return new First((char) escapedCharacter());
+		}
+	}
+
+	/**
+	 * Interprets an escape standing for a single character. The leading
+	 * backslash has already been consumed.
+	 *
+	 * @return the character
+	 */
+	private int escapedCharacter() {
+		char c = pattern.charAt(i++);
+		switch (c) {
+		case 't':
+			return '\t';
+		case 'n':
+			return '\n';
+		case 'r':
+			return '\r';
+		case 'f':
+			return '\f';
+		case 'a':
+			return '\u0007';
+		case 'e':
+			return '\u001B';
+		case 'u': {
+			int cp = Integer.parseInt(pattern.substring(i, i + 4), 16);
+			i += 4;
+			if (Character.isSurrogate((char) cp))
+				throw BAIL;
+			return cp;
+		}
+		case 'x': {
+			if (pattern.charAt(i) == '{')
+				throw BAIL;
+			int cp = Integer.parseInt(pattern.substring(i, i + 2), 16);
+			i += 2;
+			return cp;
+		}
+		default:
+			if (Character.isLetterOrDigit(c) || Character.isSurrogate(c))
+				throw BAIL; // backreferences, properties, and the like
+			return c;
+		}
+	}
+
+	/**
+	 * Adds the ASCII members of {@code \d}, {@code \w}, or {@code \s}.
+	 */
+	private static void shorthand(char c, BitSet set) {
+		switch (c) {
+		case 'w':
+			set.set('a', 'z' + 1);
+			set.set('A', 'Z' + 1);
+			set.set('_');
+			set.set('0', '9' + 1);
+			break;
+		case 'd':
+			set.set('0', '9' + 1);
+			break;
+		default:
+			set.set(' ');
+			set.set('\t', '\r' + 1);
+		}
+	}
+
+	/**
+	 * Applies any quantifier following the given atom.
+	 */
+	private void quantify(First f) {
+		if (i >= pattern.length())
+			return;
+		int bottom;
+		char c = pattern.charAt(i);
+		switch (c) {
+		case '?':
+		case '*':
+			bottom = 0;
+			i++;
+			break;
+		case '+':
+			bottom = 1;
+			i++;
+			break;
+		case '{': {
+			int close = pattern.indexOf('}', i);
+			if (close == -1)
+				throw BAIL;
+			String s = pattern.substring(i + 1, close);
+			int comma = s.indexOf(',');
+			bottom = Integer.parseInt(comma == -1 ? s : s.substring(0, comma));
+			i = close + 1;
+			break;
+		}
+		default:
+			return;
+		}
+		if (i < pattern.length()) {
+			c = pattern.charAt(i);
+			if (c == '?' || c == '+')
+				i++;
+		}
+		if (bottom == 0)
+			f.nullable = true;
+	}
+}
@@ -0,0 +1,417 @@
+/*
+ * dfh.grammar -- a recursive descent parser library for Java
+ *
+ * Copyright (C) 2012 David F. Houghton
+ *
+ * This software is licensed under the LGPL. Please see accompanying NOTICE file
+ * and lgpl.txt.
+ */
+package dfh.grammar;
+
+import java.util.regex.Pattern;
+
+/**
+ * Conservative static analysis of the number of characters a {@link Pattern}
+ * may consume. The analysis understands the common subset of regular
+ * expression syntax -- literals, escapes, character classes, groups,
+ * lookarounds, alternation, and quantifiers. Anything else, such as
+ * backreferences or the {@link Pattern#COMMENTS} flag, makes it give up and
+ * report a minimum of 0 and no maximum, which is always safe.
+ * <p>
+ * Character classes and {@code .} are assumed to consume up to two characters,
+ * since they may match a supplementary code point, unless the class can only
+ * match characters in the basic multilingual plane.
+ *
+ * @author David F. Houghton - Oct 19, 2026
+ *
+ */
+class RegexWidth {
+	/**
+	 * Signals syntax we don't analyze.
+	 */
+	@SuppressWarnings("serial")
+	private static class Bail extends RuntimeException {
+		@Override
+		public synchronized Throwable fillInStackTrace() {
+			return this;
+		}
+	}
+
+	private static final Bail BAIL = new Bail();
+
+	/**
+	 * Minimum number of characters consumed.
+	 */
+	final int min;
+	/**
+	 * Maximum number of characters consumed; {@link Rule#UNBOUNDED} if there is
+	 * no limit.
+	 */
+	final int max;
+	/**
+	 * Whether the pattern contains constructs -- anchors, lookarounds -- whose
+	 * meaning changes when the pattern is applied to a
+	 * {@link ReversedCharSequence}. Word boundaries are symmetric and don't
+	 * count.
+	 */
+	final boolean directional;
+
+	private final String pattern;
+	private final boolean asciiClasses;
+	private int i = 0;
+	private boolean sawDirectional = false;
+
+	RegexWidth(Pattern p) {
+		pattern = p.pattern();
+		asciiClasses = (p.flags() & Pattern.UNICODE_CHARACTER_CLASS) == 0;
+		int[] w;
+		if ((p.flags() & Pattern.LITERAL) == Pattern.LITERAL)
+			w = new int[] { pattern.length(), pattern.length() };
+		else if ((p.flags() & (Pattern.COMMENTS | Pattern.CANON_EQ)) != 0)
+			w = null;
+		else {
+			try {
+				w = alternation();
+				if (i < pattern.length())
+					w = null;
+			} catch (Bail b) {
+				w = null;
+			} catch (IndexOutOfBoundsException e) {
+				w = null;
+			} catch (NumberFormatException e) {
+				w = null;
+			}
+		}
+		if (w == null) {
+			min = 0;
+			max = Rule.UNBOUNDED;
+			directional = true;
+		} else {
+			min = w[0];
+			max = w[1];
+			directional = sawDirectional;
+		}
+	}
+
+	private int[] alternation() {
+		int[] w = sequence();
+		while (i < pattern.length() && pattern.charAt(i) == '|') {
+			i++;
+			int[] w2 = sequence();
+			w[0] = Math.min(w[0], w2[0]);
+			w[1] = Math.max(w[1], w2[1]);
+		}
+		return w;
+	}
+
+	private int[] sequence() {
+		int[] w = { 0, 0 };
+		while (i < pattern.length()) {
+			char c = pattern.charAt(i);
+			if (c == '|' || c == ')')
+				break;
+			int[] a = atom();
+			if (a == null)
+				continue;
+			quantify(a);
+			w[0] = Rule.addWidths(w[0], a[0]);
+			w[1] = Rule.addWidths(w[1], a[1]);
+		}
+		return w;
+	}
+
+	/**
+	 * @return width of the next atom, or {@code null} if it was a flag group
+	 *         such as {@code (?i)}
+	 */
+	private int[] atom() {
+		char c = pattern.charAt(i++);
+		switch (c) {
+		case '(':
+			return group();
+		case '[':
+			return characterClass();
+		case '.':
+			return new int[] { 1, 2 };
+		case '^':
+		case '$':
+			sawDirectional = true;
+			return new int[] { 0, 0 };
+		case '\\':
+			return escape();
+		case '*':
+		case '+':
+		case '?':
+		case '{':
+			throw BAIL;
+		default:
+			if (Character.isHighSurrogate(c) && i < pattern.length()
+					&& Character.isLowSurrogate(pattern.charAt(i))) {
+				i++;
+				return new int[] { 2, 2 };
+			}
+			return new int[] { 1, 1 };
+		}
+	}
+
+	private int[] group() {
+		boolean zeroWidth = false;
+		if (pattern.charAt(i) == '?') {
+			i++;
+			char c = pattern.charAt(i);
+			if (c == ':' || c == '>') {
+				i++;
+			} else if (c == '=' || c == '!') {
+				i++;
+				zeroWidth = true;
+			} else if (c == '<') {
+				i++;
+				c = pattern.charAt(i);
+				if (c == '=' || c == '!') {
+					i++;
+					zeroWidth = true;
+				} else {
+					// named group
+					int close = pattern.indexOf('>', i);
+					if (close == -1)
+						throw BAIL;
+					i = close + 1;
+				}
+			} else {
+				// flags
+				boolean on = true;
+				while (true) {
+					c = pattern.charAt(i++);
+					if (c == ')')
+						return null;
+					if (c == ':')
+						break;
+					if (c == '-')
+						on = false;
+					else if ((c == 'x' || c == 'U') && on)
+						throw BAIL;
+					else if ("idmsuxU".indexOf(c) == -1)
+						throw BAIL;
+				}
+			}
+		}
+		int[] w = alternation();
+		if (pattern.charAt(i++) != ')')
+			throw BAIL;
+		if (zeroWidth) {
+			sawDirectional = true;
+			return new int[] { 0, 0 };
+		}
+		return w;
+	}
+
+	private int[] characterClass() {
+		boolean bmp = asciiClasses;
+		if (pattern.charAt(i) == '^') {
+			bmp = false;
+			i++;
+		}
+		if (pattern.charAt(i) == ']')
+			i++;
+		int depth = 1;
+		while (depth > 0) {
+			char c = pattern.charAt(i++);
+			switch (c) {
+			case '[':
+				if (pattern.charAt(i) == '^')
+					bmp = false;
+				depth++;
+				break;
+			case ']':
+				depth--;
+				break;
+			case '\\':
+				c = pattern.charAt(i++);
+				if (c == 'Q') {
+					int e = pattern.indexOf("\\E", i);
+					if (e == -1)
+						throw BAIL;
+					i = e + 2;
+				} else if (c == 'u') {
+					if (Character.isSurrogate(unicode()))
+						bmp = false;
+				} else if ("pPDWSHVxN".indexOf(c) > -1)
+					bmp = false;
+				break;
+			default:
+				if (Character.isSurrogate(c))
+					bmp = false;
+			}
+		}
+		return new int[] { 1, bmp ? 1 : 2 };
+	}
+
+	private int[] escape() {
+		char c = pattern.charAt(i++);
+		switch (c) {
+		case 'b':
+		case 'B':
+			if (i < pattern.length() && pattern.charAt(i) == '{')
+				throw BAIL;
+			return new int[] { 0, 0 };
+		case 'A':
+		case 'z':
+		case 'Z':
+		case 'G':
+			sawDirectional = true;
+			return new int[] { 0, 0 };
+		case 'd':
+		case 'w':
+		case 's':
+			return new int[] { 1, asciiClasses ? 1 : 2 };
+		case 'h':
+		case 'v':
+		case 't':
+		case 'n':
+		case 'r':
+		case 'f':
+		case 'a':
+		case 'e':
+			return new int[] { 1, 1 };
+		case 'D':
+		case 'W':
+		case 'S':
+		case 'H':
+		case 'V':
+		case 'R':
+			return new int[] { 1, 2 };
+		case 'p':
+		case 'P':
+			if (pattern.charAt(i) == '{') {
+				int close = pattern.indexOf('}', i);
+				if (close == -1)
+					throw BAIL;
+				i = close + 1;
+			} else
+				i++;
+			return new int[] { 1, 2 };
+		case 'c':
+			i++;
+			return new int[] { 1, 1 };
+		case 'u':
+			// java.util.regex joins an escaped surrogate pair into one code
+			// point, so a following quantifier applies to both halves
+			if (Character.isHighSurrogate(unicode())
+					&& pattern.startsWith("\\u", i)) {
+				int j = i;
+				i += 2;
+				if (Character.isLowSurrogate(unicode()))
+					return new int[] { 2, 2 };
+				i = j;
+			}
+			return new int[] { 1, 1 };
+		case 'x':
+			if (pattern.charAt(i) == '{') {
+				int close = pattern.indexOf('}', i);
+				if (close == -1)
+					throw BAIL;
+				int cp = Integer.parseInt(pattern.substring(i + 1, close), 16);
+				i = close + 1;
+				int n = Character.charCount(cp);
+				return new int[] { n, n };
+			}
+			i += 2;
+			return new int[] { 1, 1 };
+		case '0':
+			for (int j = 0; j < 3 && i < pattern.length()
+					&& pattern.charAt(i) >= '0' && pattern.charAt(i) <= '7'; j++)
+				i++;
+			return new int[] { 1, 1 };
+		case 'Q': {
+			int e = pattern.indexOf("\\E", i);
+			int n;
+			if (e == -1) {
+				n = pattern.length() - i;
+				i = pattern.length();
+			} else {
+				n = e - i;
+				i = e + 2;
+			}
+			// a quantifier after \Q...\E applies only to the last character
+			if (n > 1 && i < pattern.length()
+					&& "?*+{".indexOf(pattern.charAt(i)) > -1)
+				throw BAIL;
+			return new int[] { n, n };
+		}
+		default:
+			if (Character.isLetterOrDigit(c))
+				throw BAIL; // backreferences and the like
+			return new int[] { 1, 1 };
+		}
+	}
+
+	/**
+	 * @return the character escaped by the four hex digits at the current
+	 *         position, which follow a backslash and a {@code u}
+	 */
+	private char unicode() {
+		char c = (char) Integer.parseInt(pattern.substring(i, i + 4), 16);
+		i += 4;
+		return c;
+	}
+
+	/**
+	 * Applies any quantifier following the atom whose width is given.
+	 *
+	 * @param w
+	 *            width of atom
+	 */
+	private void quantify(int[] w) {
+		if (i >= pattern.length())
+			return;
+		int bottom, top;
+		char c = pattern.charAt(i);
+		switch (c) {
+		case '?':
+			bottom = 0;
+			top = 1;
+			i++;
+			break;
+		case '*':
+			bottom = 0;
+			top = Rule.UNBOUNDED;
+			i++;
+			break;
+		case '+':
+			bottom = 1;
+			top = Rule.UNBOUNDED;
+			i++;
+			break;
+		case '{': {
+			int close = pattern.indexOf('}', i);
+			if (close == -1)
+				throw BAIL;
+			String s = pattern.substring(i + 1, close);
+			int comma = s.indexOf(',');
+			try {
+				if (comma == -1)
+					bottom = top = Integer.parseInt(s);
+				else {
+					bottom = Integer.parseInt(s.substring(0, comma));
+					String t = s.substring(comma + 1);
+					top = t.length() == 0 ? Rule.UNBOUNDED : Integer
+							.parseInt(t);
+				}
+			} catch (NumberFormatException e) {
+				throw BAIL;
+			}
+			i = close + 1;
+			break;
+		}
+		default:
+			return;
+		}
+		if (i < pattern.length()) {
+			c = pattern.charAt(i);
+			if (c == '?' || c == '+')
+				i++;
+		}
+		w[0] = Rule.multiplyWidth(w[0], bottom);
+		w[1] = Rule.multiplyWidth(w[1], top);
+	}
+}
@@ -9,6 +9,7 @@
 package dfh.grammar;
 
 import java.io.Serializable;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.Map;
@@ -470,6 +471,41 @@ public class RepetitionRule extends Rule implements Serializable,
 		}
 	}
 
+	@Override
+	protected int[] width(Map<String, int[]> cache) {
+		int[] w = cachedWidth(cache);
+		if (w != null)
+			return w;
+		w = r.width(cache);
+		return setWidth(cache, multiplyWidth(w[0], repetition.bottom),
+				multiplyWidth(w[1], repetition.top));
+	}
+
+	@Override
+	StartSet startSet(Map<String, StartSet> cache) {
+		if (cache.containsKey(uid()))
+			return cache.get(uid()); // null if we are recursing
+		cache.put(uid(), null);
+		StartSet s = r.startSet(cache);
+		cache.put(uid(), s);
+		return s;
+	}
+
+	@Override
+	Map<String, RequiredLiteral> required(
+			Map<String, Map<String, RequiredLiteral>> cache) {
+		Map<String, RequiredLiteral> rl = cache.get(uid());
+		if (rl == null) {
+			if (cache.containsKey(uid()))
+				return Collections.emptyMap(); // recursion
+			cache.put(uid(), null);
+			rl = repetition.bottom == 0 ? Collections
+				.<String, RequiredLiteral> emptyMap() : r.required(cache);
+			cache.put(uid(), rl);
+		}
+		return rl;
+	}
+
 	@Override
 	public Rule deepCopy(Label l, String nameBase, Map<String, Rule> cycleMap,
 			Set<String> knownLabels, Set<String> knownConditions) {
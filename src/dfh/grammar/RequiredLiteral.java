@@ -0,0 +1,131 @@
+/*
+ * dfh.grammar -- a recursive descent parser library for Java
+ *
+ * Copyright (C) 2012 David F. Houghton
+ *
+ * This software is licensed under the LGPL. Please see accompanying NOTICE file
+ * and lgpl.txt.
+ */
+package dfh.grammar;
+
+import java.io.Serializable;
+
+/**
+ * A literal every match of some {@link Rule} must contain, together with the
+ * least and greatest distance from the start of the match to the start of the
+ * literal. It is found by {@link Rule#required(java.util.Map)} and sought with
+ * the Boyer-Moore-Horspool algorithm, or with
+ * {@link String#indexOf(String, int)} when the sequence is a {@link String}
+ * searched to its end.
+ *
+ * @author David F. Houghton - Oct 19, 2026
+ *
+ */
+class RequiredLiteral implements Serializable {
+	private static final long serialVersionUID = 1L;
+	final String literal;
+	/**
+	 * Least offset of the literal relative to the start of the match.
+	 */
+	final int minBefore;
+	/**
+	 * Greatest offset of the literal relative to the start of the match;
+	 * {@link Rule#UNBOUNDED} if there is no limit.
+	 */
+	final int maxBefore;
+	/**
+	 * Horspool shifts indexed by the low byte of a character. Characters
+	 * sharing a low byte share the smallest shift, which is always safe.
+	 */
+	private final int[] shifts = new int[256];
+
+	RequiredLiteral(String literal, int minBefore, int maxBefore) {
+		this.literal = literal;
+		this.minBefore = minBefore;
+		this.maxBefore = maxBefore;
+		int last = literal.length() - 1;
+		for (int i = 0; i < shifts.length; i++)
+			shifts[i] = literal.length();
+		for (int i = 0; i < last; i++)
+			shifts[literal.charAt(i) & 0xFF] = last - i;
+	}
+
+	/**
+	 * @param min
+	 *            least distance to add to {@link #minBefore}
+	 * @param max
+	 *            greatest distance to add to {@link #maxBefore}
+	 * @return this literal as seen from a match beginning the given distance
+	 *         earlier
+	 */
+	RequiredLiteral shift(int min, int max) {
+		if (min == 0 && max == 0)
+			return this;
+		return new RequiredLiteral(literal, minBefore + min, Rule.addWidths(
+				maxBefore, max));
+	}
+
+	/**
+	 * @param other
+	 *            the same literal required where this one is not
+	 * @return the literal as required by either this or the other
+	 */
+	RequiredLiteral or(RequiredLiteral other) {
+		return new RequiredLiteral(literal, Math.min(minBefore,
+				other.minBefore), Math.max(maxBefore, other.maxBefore));
+	}
+
+	/**
+	 * @return whether this is more useful to search for than the other
+	 */
+	boolean betterThan(RequiredLiteral other) {
+		if (other == null)
+			return true;
+		if (literal.length() != other.literal.length())
+			return literal.length() > other.literal.length();
+		int spread = maxBefore - minBefore, otherSpread = other.maxBefore
+				- other.minBefore;
+		if (spread != otherSpread)
+			return spread < otherSpread;
+		return literal.compareTo(other.literal) < 0;
+	}
+
+	/**
+	 * Finds the first occurrence of the literal in a region of a sequence.
+	 *
+	 * @param s
+	 *            sequence to search
+	 * @param from
+	 *            least offset of the occurrence
+	 * @param end
+	 *            occurrence must end at or before this offset
+	 * @return offset of the occurrence, or -1 if there is none
+	 */
+	int find(CharSequence s, int from, int end) {
+		int m = literal.length();
+		if (s instanceof String && end == s.length()) {
+			int i = ((String) s).indexOf(literal, from);
+			return i == -1 || i + m > end ? -1 : i;
+		}
+		int last = m - 1;
+		char tail = literal.charAt(last);
+		for (int i = from; i + m <= end;) {
+			char c = s.charAt(i + last);
+			if (c == tail) {
+				int j = last - 1;
+				while (j >= 0 && s.charAt(i + j) == literal.charAt(j))
+					j--;
+				if (j < 0)
+					return i;
+			}
+			i += shifts[c & 0xFF];
+		}
+		return -1;
+	}
+
+	@Override
+	public String toString() {
+		return "'" + literal + "' at " + minBefore + ".."
+				+ (maxBefore == Rule.UNBOUNDED ? "" : maxBefore);
+	}
+}
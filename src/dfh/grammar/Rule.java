@@ -66,6 +66,23 @@ public abstract class Rule {
 	 */
 	protected Set<String> labels;
 	protected boolean mayBeZeroWidth = true;
+	/**
+	 * Value of {@link #maxWidth} when there is no upper bound on the width of
+	 * a match.
+	 */
+	public static final int UNBOUNDED = Integer.MAX_VALUE;
+	/**
+	 * The fewest characters any match of this rule can consume. Set by
+	 * {@link #width(Map)} when the grammar is validated; until then it is the
+	 * safe value 0.
+	 */
+	protected int minWidth = 0;
+	/**
+	 * The most characters any match of this rule can consume, or
+	 * {@link #UNBOUNDED}. Set by {@link #width(Map)} when the grammar is
+	 * validated.
+	 */
+	protected int maxWidth = UNBOUNDED;
 	/**
 	 * A reference to the rule from which this rule was generated if the rule is
 	 * reversed.
@@ -603,6 +620,134 @@ public abstract class Rule {
 	 */
 	protected abstract Boolean mayBeZeroWidth(Map<String, Boolean> cache);
 
+	/**
+	 * Calculates the minimum and maximum width of any match of this rule,
+	 * setting {@link #minWidth} and {@link #maxWidth}. The values must be
+	 * conservative: a rule may never match fewer than {@link #minWidth} or
+	 * more than {@link #maxWidth} characters. They are used to abandon
+	 * matching wherever too little of the character sequence remains for a
+	 * match to be possible.
+	 * <p>
+	 * The base implementation knows nothing about the rule and so returns 0
+	 * and {@link #UNBOUNDED}. It should be overridden by any rule that can do
+	 * better and by any non-terminal rule, which must calculate the widths of
+	 * its constituents.
+	 * 
+	 * @param cache
+	 *            for keeping track of visited rules and caching the results of
+	 *            the visits; prevents infinite recursive loops
+	 * @return minimum and maximum width
+	 */
+	protected int[] width(Map<String, int[]> cache) {
+		return setWidth(cache, 0, UNBOUNDED);
+	}
+
+	/**
+	 * Determines what may begin a match of this rule so that the
+	 * {@link Grammar} can derive an {@link Indexer} when none is supplied.
+	 * Rules that can only match zero-width return an empty set; whether a rule
+	 * may match zero-width is read from {@link #minWidth}, so
+	 * {@link #width(Map)} must be called first.
+	 * <p>
+	 * The base implementation knows nothing about the rule and so returns
+	 * {@code null}, meaning anything may begin a match. Non-terminal rules
+	 * must override it to combine the sets of their constituents.
+	 *
+	 * @param cache
+	 *            for keeping track of visited rules and caching the results of
+	 *            the visits; prevents infinite recursive loops
+	 * @return what may begin a match, or {@code null} if this is unknown
+	 */
+	StartSet startSet(Map<String, StartSet> cache) {
+		return null;
+	}
+
+	/**
+	 * Finds literals every match of this rule must contain, so that the
+	 * {@link Grammar} can skip regions of a sequence that cannot hold a match.
+	 * As with {@link #startSet(Map)}, {@link #width(Map)} must be called
+	 * first. The base implementation knows of no required literals.
+	 *
+	 * @param cache
+	 *            for keeping track of visited rules and caching the results of
+	 *            the visits; prevents infinite recursive loops
+	 * @return required literals, keyed by literal
+	 */
+	Map<String, RequiredLiteral> required(
+			Map<String, Map<String, RequiredLiteral>> cache) {
+		return Collections.emptyMap();
+	}
+
+	/**
+	 * Records the results of {@link #width(Map)}.
+	 * 
+	 * @param cache
+	 * @param min
+	 * @param max
+	 * @return minimum and maximum width
+	 */
+	protected final int[] setWidth(Map<String, int[]> cache, int min, int max) {
+		minWidth = min;
+		maxWidth = max;
+		int[] w = { min, max };
+		cache.put(uid(), w);
+		return w;
+	}
+
+	/**
+	 * Handles the cache lookup common to all non-terminal implementations of
+	 * {@link #width(Map)}.
+	 * 
+	 * @param cache
+	 * @return the cached width or, if this rule is still being analyzed and
+	 *         hence is being visited recursively, a width with no information;
+	 *         {@code null} if this rule has not yet been visited
+	 */
+	protected final int[] cachedWidth(Map<String, int[]> cache) {
+		if (cache.containsKey(uid())) {
+			int[] w = cache.get(uid());
+			if (w == null)
+				// recursion; we bail
+				return new int[] { 0, UNBOUNDED };
+			minWidth = w[0];
+			maxWidth = w[1];
+			return w;
+		}
+		cache.put(uid(), null);
+		return null;
+	}
+
+	/**
+	 * Adds two widths, treating {@link #UNBOUNDED} as infinity.
+	 * 
+	 * @param a
+	 * @param b
+	 * @return the sum
+	 */
+	static int addWidths(int a, int b) {
+		if (a == UNBOUNDED || b == UNBOUNDED)
+			return UNBOUNDED;
+		long l = (long) a + b;
+		return l >= UNBOUNDED ? UNBOUNDED : (int) l;
+	}
+
+	/**
+	 * Multiplies a width by a repetition count, treating {@link #UNBOUNDED}
+	 * as infinity.
+	 * 
+	 * @param w
+	 * @param count
+	 * @return the product
+	 */
+	static int multiplyWidth(int w, int count) {
+		if (w == 0 || count == 0)
+			return 0;
+		if (w == UNBOUNDED || count == UNBOUNDED)
+			return UNBOUNDED;
+		long l = (long) w * count;
+		return l >= UNBOUNDED ? UNBOUNDED : (int) l;
+	}
+
 	/**
 	 * This method is required for grammar composition. It should be overwritten
 	 * by any rule that can serve as an explicit rule; that is, everything
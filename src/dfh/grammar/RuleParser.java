@@ -248,9 +248,8 @@ final class RuleParser {
 	}
 
 	/**
-	 * Adjusts {@link UplevelBackReferenceFragment#level} as appropriate or
-	 * replaces these fragments with {@link BackReferenceFragment} fragments
-	 * where appropriate.
+	 * Validates {@link UplevelBackReferenceFragment} fragments and replaces
+	 * them with {@link BackReferenceFragment} fragments where appropriate.
 	 * 
 	 * @param sl2
 	 */
@@ -268,13 +267,8 @@ final class RuleParser {
 				if (ubf.reference == cpos)
 					throw new GrammarException("uplevel back reference " + ubf
 							+ " in " + line + " references its own position");
-				if (ubf.rep.redundant()) {
-					if (level == 0) {
-						sl2.set(i, new BackReferenceFragment(ubf.reference));
-					}
-				} else
-					ubf.level = 1;
-				ubf.level += level;
+				if (level == 0 && ubf.rep.redundant())
+					sl2.set(i, new BackReferenceFragment(ubf.reference));
 			} else if (rf instanceof GroupFragment) {
 				GroupFragment gf = (GroupFragment) rf;
 				for (SequenceFragment sl : gf.alternates) {
@@ -10,6 +10,8 @@ package dfh.grammar;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -33,23 +35,61 @@ public class SequenceRule extends Rule implements Serializable, NonterminalRule
 	private static final long serialVersionUID = 8L;
 	final Rule[] sequence;
 	final List<Set<String>> tagList;
+	/**
+	 * The minimum width of the elements of the sequence from a given index to
+	 * its end. A partial match that cannot accommodate the remaining elements
+	 * before the end of the matching region is abandoned. Where the remaining
+	 * elements contain a {@link BacktrackingBarrier} the value is 0, since
+	 * abandoning such a partial match early might avoid a barrier that would
+	 * otherwise be hit. Nothing is abandoned when keeping the rightmost match,
+	 * which may be such a partial match. Set by {@link #width(Map)}.
+	 */
+	int[] suffixMin;
+	/**
+	 * The maximum width of the elements of the sequence from a given index to
+	 * its end, used to abandon partial matches that cannot reach a
+	 * {@link Floor}. Like {@link #suffixMin}, it carries no information --
+	 * here, {@link Rule#UNBOUNDED} -- where a {@link BacktrackingBarrier} may
+	 * be hit.
+	 */
+	int[] suffixMax;
+	/**
+	 * Whether this sequence is the body of a rule definition, and hence the
+	 * sequence whose elements {@link UpLevelBackReferenceRule uplevel back
+	 * references} within it refer to.
+	 */
+	boolean definition;
 
 	class SequenceMatcher extends NonterminalMatcher {
 		LinkedList<Matcher> matchers = new LinkedList<Matcher>();
-		LinkedList<Match> matched = new LinkedList<Match>();
+		/**
+		 * The matches of the elements of the sequence matched so far, indexed
+		 * by position, so that back references can find what they refer to in
+		 * constant time.
+		 */
+		final Match[] matched = new Match[sequence.length];
+		/**
+		 * The number of elements matched.
+		 */
+		int count = 0;
 
 		public SequenceMatcher(Integer offset,
 				Map<Integer, CachedMatch>[] cache, Matcher master) {
 			super(offset, cache, SequenceRule.this, master);
 		}
 
+		@Override
+		SequenceMatcher innerScope() {
+			return definition ? this : scope;
+		}
+
 		@Override
 		protected void fetchNext() {
 			try {
 				while (true) {
-					if (matched.size() > 0) {
-						while (!matched.isEmpty()) {
-							matched.removeLast();
+					if (count > 0) {
+						while (count > 0) {
+							matched[--count] = null;
 							if (matchers.peekLast().mightHaveNext())
 								break;
 							else
@@ -63,39 +103,52 @@ public class SequenceRule extends Rule implements Serializable, NonterminalRule
 					}
 					next = null;
 					boolean found = true;
-					while (matched.size() < sequence.length) {
+					while (count < sequence.length) {
 						Matcher m;
 						if (matchers.isEmpty()) {
 							m = sequence[0].matcher(offset, cache, this);
+							if (sequence.length == 1)
+								delegateFloor(m);
 							matchers.add(m);
 						} else
 							m = matchers.peekLast();
 						Match n = m.mightHaveNext() ? m.match() : null;
+						if (n != null && suffixMin != null
+								&& !options.keepRightmost) {
+							int i = count + 1;
+							// the rest of the sequence cannot fit
+							if (n.end() + suffixMin[i] > options.end())
+								continue;
+							// or cannot reach the floor
+							if (floor != null
+									&& addWidths(n.end(), suffixMax[i]) < floor
+											.end)
+								continue;
+						}
 						if (n == null) {
 							matchers.removeLast();
-							if (!matched.isEmpty()) {
-								matched.removeLast();
-							}
+							if (count > 0)
+								matched[--count] = null;
 							if (matchers.isEmpty()) {
 								done = true;
 								found = false;
 								break;
 							}
 						} else {
-							matched.add(n);
-							if (matched.size() < sequence.length) {
-								m = sequence[matched.size()].matcher(n.end(),
-										cache, this);
+							matched[count++] = n;
+							if (count < sequence.length) {
+								m = sequence[count].matcher(n.end(), cache,
+										this);
+								if (count == sequence.length - 1)
+									delegateFloor(m);
 								matchers.add(m);
 							}
 						}
 					}
 					if (found) {
-						next = new Match(SequenceRule.this, offset, matched
-								.peekLast().end());
-						Match[] children = matched
-								.toArray(new Match[sequence.length]);
-						next.setChildren(children);
+						next = new Match(SequenceRule.this, offset,
+								matched[count - 1].end());
+						next.setChildren(matched.clone());
 					}
 					break;
 				}
@@ -128,6 +181,7 @@ public class SequenceRule extends Rule implements Serializable, NonterminalRule
 		super(label);
 		this.sequence = sequence;
 		this.tagList = tagList;
+		definition = label.t == Label.Type.explicit;
 	}
 
 	@Override
@@ -319,6 +373,84 @@ public class SequenceRule extends Rule implements Serializable, NonterminalRule
 		}
 	}
 
+	@Override
+	protected int[] width(Map<String, int[]> cache) {
+		int[] w = cachedWidth(cache);
+		if (w != null)
+			return w;
+		int[] mins = new int[sequence.length + 1];
+		int[] maxes = new int[sequence.length + 1];
+		int min = 0, max = 0;
+		boolean barred = false;
+		for (int i = sequence.length - 1; i >= 0; i--) {
+			w = sequence[i].width(cache);
+			min = addWidths(min, w[0]);
+			max = addWidths(max, w[1]);
+			if (!barred)
+				barred = containsBarrier(sequence[i]);
+			mins[i] = barred ? 0 : min;
+			maxes[i] = barred ? UNBOUNDED : max;
+		}
+		suffixMax = maxes;
+		suffixMin = mins;
+		return setWidth(cache, min, max);
+	}
+
+	@Override
+	StartSet startSet(Map<String, StartSet> cache) {
+		if (cache.containsKey(uid()))
+			return cache.get(uid()); // null if we are recursing
+		cache.put(uid(), null);
+		StartSet s = new StartSet();
+		for (Rule r : sequence) {
+			StartSet s2 = r.startSet(cache);
+			if (s2 == null)
+				return null;
+			s.add(s2);
+			if (r.minWidth > 0)
+				break;
+		}
+		cache.put(uid(), s);
+		return s;
+	}
+
+	@Override
+	Map<String, RequiredLiteral> required(
+			Map<String, Map<String, RequiredLiteral>> cache) {
+		Map<String, RequiredLiteral> rl = cache.get(uid());
+		if (rl == null) {
+			if (cache.containsKey(uid()))
+				return Collections.emptyMap(); // recursion
+			cache.put(uid(), null);
+			rl = new HashMap<String, RequiredLiteral>();
+			int min = 0, max = 0;
+			for (Rule r : sequence) {
+				for (RequiredLiteral l : r.required(cache).values()) {
+					l = l.shift(min, max);
+					if (l.betterThan(rl.get(l.literal)))
+						rl.put(l.literal, l);
+				}
+				min = addWidths(min, r.minWidth);
+				max = addWidths(max, r.maxWidth);
+			}
+			cache.put(uid(), rl);
+		}
+		return rl;
+	}
+
+	/**
+	 * @param r
+	 * @return whether matching the rule might hit a
+	 *         {@link BacktrackingBarrier}
+	 */
+	private static boolean containsBarrier(Rule r) {
+		for (Rule sr : r.subRules(false)) {
+			if (sr instanceof BacktrackingBarrier)
+				return true;
+		}
+		return false;
+	}
+
 	@Override
 	public Rule deepCopy(Label l, String nameBase, Map<String, Rule> cycleMap,
 			Set<String> knownLabels, Set<String> knownConditions) {
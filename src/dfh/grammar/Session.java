@@ -0,0 +1,324 @@
+/*
+ * dfh.grammar -- a recursive descent parser library for Java
+ * 
+ * Copyright (C) 2012 David F. Houghton
+ * 
+ * This software is licensed under the LGPL. Please see accompanying NOTICE file
+ * and lgpl.txt.
+ */
+package dfh.grammar;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Pattern;
+
+/**
+ * Mutable scratch space shared by all the {@link GlobalState} objects created
+ * for a single match -- the original and those produced by
+ * {@link GlobalState#reverse()} and {@link GlobalState#unstudy()}. Like the
+ * offset cache, it belongs to a single {@link Matcher} at a time and is not
+ * thread safe.
+ * <p>
+ * 
+ * @author David F. Houghton - Oct 19, 2026
+ * 
+ */
+class Session {
+	private static final java.util.regex.Matcher[] NO_MATCHERS = {};
+	/**
+	 * Regex matchers for {@link LeafRule LeafRules} against the forward
+	 * sequence, indexed by {@link Rule#cacheIndex}.
+	 */
+	private java.util.regex.Matcher[] forward = NO_MATCHERS;
+	/**
+	 * Regex matchers against the {@link ReversedCharSequence}.
+	 */
+	private java.util.regex.Matcher[] reversed = NO_MATCHERS;
+	/**
+	 * Verdicts of {@link Condition#pure() pure} conditions, keyed by the span
+	 * tested in forward offsets.
+	 */
+	private Map<Condition, Map<Long, Boolean>> verdicts;
+	/**
+	 * The sequences the regex matchers read.
+	 */
+	private CharSequence forwardSeq, reversedSeq;
+	/**
+	 * Steps between reads of the clock, when there is a deadline, and polls
+	 * for cancellation.
+	 */
+	private static final int POLL_INTERVAL = 1 << 10;
+	/**
+	 * Steps between calls to {@link #yieldHook}; 0 if it is never called.
+	 */
+	private int quantum;
+	private Runnable yieldHook;
+	/**
+	 * See {@link Options#maxSteps()}.
+	 */
+	private long maxSteps;
+	/**
+	 * {@link System#nanoTime()} after which matching is aborted, if
+	 * {@link #timed}.
+	 */
+	private long deadline;
+	private boolean timed;
+	/**
+	 * See {@link Options#interruptible()}.
+	 */
+	private boolean interruptible;
+	/**
+	 * See {@link Options#cancellation()}.
+	 */
+	private BooleanSupplier cancellation;
+	/**
+	 * Polled like {@link #cancellation}; set by a parallel search to stop the
+	 * threads working for it.
+	 */
+	private BooleanSupplier halt;
+	/**
+	 * Steps taken as of the last checkpoint.
+	 */
+	private long steps;
+	/**
+	 * Steps remaining before the next call to {@link #yieldHook}.
+	 */
+	private long untilYield;
+	/**
+	 * Steps between the last checkpoint and the next.
+	 */
+	private int interval;
+	/**
+	 * Steps remaining before the next checkpoint.
+	 */
+	private int countdown;
+	/**
+	 * Sequence matched, for completing {@link #rightmost}.
+	 */
+	private CharSequence cs;
+	/**
+	 * Rightmost match registered with a top-level matcher; see
+	 * {@link Options#keepRightmost()}.
+	 */
+	private Match rightmost;
+
+	/**
+	 * Prepares the session for a match under the given options.
+	 * 
+	 * @param o
+	 * @param cs
+	 *            sequence to match
+	 */
+	void begin(Options o, CharSequence cs) {
+		this.cs = cs;
+		rightmost = null;
+		yieldHook = o.yieldHook;
+		quantum = yieldHook == null ? 0 : o.yieldQuantum;
+		maxSteps = o.maxSteps;
+		timed = o.deadline != null;
+		if (timed)
+			deadline = System.nanoTime() + o.deadline.toNanos();
+		interruptible = o.interruptible;
+		cancellation = o.cancellation;
+		halt = null;
+		steps = 0;
+		untilYield = quantum;
+		schedule();
+	}
+
+	/**
+	 * Adopts the deadline of another session, that of the {@link Matcher} on
+	 * whose behalf this session works.
+	 * 
+	 * @param s
+	 */
+	void shareDeadline(Session s) {
+		timed = s.timed;
+		deadline = s.deadline;
+		schedule();
+	}
+
+	/**
+	 * Sets a token polled along with {@link Options#cancellation()} until the
+	 * next call to {@link #begin(Options, CharSequence)}.
+	 * 
+	 * @param halt
+	 */
+	void haltWhen(BooleanSupplier halt) {
+		this.halt = halt;
+		schedule();
+	}
+
+	/**
+	 * Sets the countdown to the next step at which anything needs doing.
+	 */
+	private void schedule() {
+		long i = Integer.MAX_VALUE;
+		if (quantum > 0)
+			i = Math.min(i, untilYield);
+		if (maxSteps > 0)
+			i = Math.min(i, maxSteps - steps + 1);
+		if (timed || interruptible || cancellation != null || halt != null)
+			i = Math.min(i, POLL_INTERVAL);
+		countdown = interval = (int) i;
+	}
+
+	/**
+	 * Counts a step of the match -- an attempt by a {@link NonterminalMatcher}
+	 * to find its next match. Every so often this checks the limits on the
+	 * match, polls for cancellation, and calls the yield hook.
+	 * 
+	 * @throws MatchAbortedException
+	 *             if the match has exceeded {@link Options#maxSteps()} or
+	 *             {@link Options#deadline()}
+	 * @throws MatchCancelledException
+	 *             if the thread has been interrupted or the match cancelled
+	 */
+	void step() {
+		if (--countdown == 0)
+			checkpoint();
+	}
+
+	private void checkpoint() {
+		steps += interval;
+		if (maxSteps > 0 && steps > maxSteps)
+			throw abort("match exceeded " + maxSteps + " steps");
+		if (timed && System.nanoTime() - deadline > 0)
+			throw abort("match passed its deadline after " + steps + " steps");
+		if (interruptible && Thread.currentThread().isInterrupted())
+			throw cancel("match interrupted after " + steps + " steps");
+		if (cancellation != null && cancellation.getAsBoolean()
+				|| halt != null && halt.getAsBoolean())
+			throw cancel("match cancelled after " + steps + " steps");
+		if (quantum > 0 && (untilYield -= interval) == 0) {
+			untilYield = quantum;
+			yieldHook.run();
+		}
+		schedule();
+	}
+
+	private MatchAbortedException abort(String message) {
+		stop();
+		return new MatchAbortedException(message, rightmost, steps);
+	}
+
+	private MatchCancelledException cancel(String message) {
+		stop();
+		return new MatchCancelledException(message, rightmost, steps);
+	}
+
+	private void stop() {
+		// any further step is checked as well
+		countdown = interval = 1;
+		if (rightmost != null)
+			rightmost.done(cs);
+	}
+
+	/**
+	 * Records a new rightmost match.
+	 * 
+	 * @param m
+	 */
+	void register(Match m) {
+		rightmost = m;
+	}
+
+	/**
+	 * Returns a regex matcher for the given rule and sequence, creating one if
+	 * necessary. The matcher uses transparent, non-anchoring bounds. Callers
+	 * must set its region before every use.
+	 * 
+	 * @param r
+	 *            rule the matcher serves
+	 * @param p
+	 *            rule's pattern
+	 * @param options
+	 *            the state whose sequence is to be matched
+	 * @return reusable regex matcher
+	 */
+	java.util.regex.Matcher regex(Rule r, Pattern p, GlobalState options) {
+		java.util.regex.Matcher[] matchers = options.isReversed ? reversed
+				: forward;
+		int i = r.cacheIndex;
+		if (i >= matchers.length) {
+			java.util.regex.Matcher[] bigger = new java.util.regex.Matcher[Math
+					.max(i + 1, matchers.length * 2)];
+			System.arraycopy(matchers, 0, bigger, 0, matchers.length);
+			matchers = bigger;
+			if (options.isReversed)
+				reversed = matchers;
+			else
+				forward = matchers;
+		}
+		CharSequence seq = options.seq();
+		if (seq != (options.isReversed ? reversedSeq : forwardSeq)) {
+			// the session has been reused for another sequence
+			for (java.util.regex.Matcher old : matchers) {
+				if (old != null)
+					old.reset(seq);
+			}
+			if (options.isReversed)
+				reversedSeq = seq;
+			else
+				forwardSeq = seq;
+		}
+		java.util.regex.Matcher m = matchers[i];
+		if (m == null) {
+			m = p.matcher(seq);
+			m.useTransparentBounds(true);
+			m.useAnchoringBounds(false);
+			matchers[i] = m;
+		} else if (m.pattern() != p)
+			// rules with the same cache index have equivalent patterns
+			m.usePattern(p);
+		return m;
+	}
+
+	/**
+	 * Prepares the session for reuse against another sequence. The regex
+	 * matchers are kept; what was learned about the old sequence is
+	 * forgotten.
+	 */
+	void clear() {
+		verdicts = null;
+	}
+
+	/**
+	 * Tests a {@link Condition#pure() pure} condition, consulting and filling
+	 * the memo of its verdicts. Spans are recorded in forward offsets so that
+	 * verdicts found inside backwards assertions are shared.
+	 * 
+	 * @param c
+	 *            pure condition
+	 * @param n
+	 *            match to test
+	 * @param m
+	 *            matcher that produced the match
+	 * @return whether the match passes
+	 */
+	boolean passes(Condition c, Match n, Matcher m) {
+		GlobalState options = m.options;
+		int start = n.start(), end = n.end();
+		if (options.isReversed) {
+			int t = options.rcs.translate(end) + 1;
+			end = options.rcs.translate(start) + 1;
+			start = t;
+		}
+		if (verdicts == null)
+			verdicts = new IdentityHashMap<Condition, Map<Long, Boolean>>();
+		Map<Long, Boolean> memo = verdicts.get(c);
+		if (memo == null) {
+			memo = new HashMap<Long, Boolean>();
+			verdicts.put(c, memo);
+		}
+		Long key = ((long) start << 32) | end;
+		Boolean b = memo.get(key);
+		if (b == null) {
+			b = c.passes(n, m, options.seq());
+			memo.put(key, b);
+		}
+		return b;
+	}
+}
@@ -0,0 +1,88 @@
+/*
+ * dfh.grammar -- a recursive descent parser library for Java
+ *
+ * Copyright (C) 2012 David F. Houghton
+ *
+ * This software is licensed under the LGPL. Please see accompanying NOTICE file
+ * and lgpl.txt.
+ */
+package dfh.grammar;
+
+import java.util.BitSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * What may begin a match of a {@link Rule}: some set of literals and
+ * characters. It is accumulated by {@link Rule#startSet(java.util.Map)} and
+ * turned into the cheapest {@link Indexer} that will find every offset at
+ * which such a match might begin. Whether the rule may also match the empty
+ * string is not recorded here; that is what {@link Rule#minWidth} is for.
+ *
+ * @author David F. Houghton - Oct 19, 2026
+ *
+ */
+class StartSet {
+	/**
+	 * Literals any of which may begin a match.
+	 */
+	private final Set<String> literals = new TreeSet<String>();
+	/**
+	 * Characters any of which may begin a match.
+	 */
+	private final BitSet chars = new BitSet();
+
+	StartSet() {
+	}
+
+	StartSet(String literal) {
+		if (literal.length() > 0)
+			literals.add(literal);
+	}
+
+	StartSet(BitSet chars) {
+		this.chars.or(chars);
+	}
+
+	/**
+	 * Adds the contents of another set to this one.
+	 *
+	 * @param other
+	 * @return self to allow chaining of methods
+	 */
+	StartSet add(StartSet other) {
+		literals.addAll(other.literals);
+		chars.or(other.chars);
+		return this;
+	}
+
+	/**
+	 * Picks an {@link Indexer}: a {@link CharacterIndexer} if matches can only
+	 * begin with one character, a {@link StringIndexer} or
+	 * {@link AhoCorasickIndexer} if they must begin with one of a set of
+	 * literals, and otherwise a {@link CharacterClassIndexer}.
+	 *
+	 * @return an {@link Indexer}, or {@code null} if the set is empty
+	 */
+	Indexer indexer() {
+		BitSet initials = (BitSet) chars.clone();
+		boolean singles = true;
+		for (String l : literals) {
+			initials.set(l.charAt(0));
+			singles &= l.length() == 1;
+		}
+		if (chars.isEmpty() && !singles) {
+			if (literals.size() == 1)
+				return new StringIndexer(literals.iterator().next());
+			return new AhoCorasickIndexer(literals, false);
+		}
+		switch (initials.cardinality()) {
+		case 0:
+			return null;
+		case 1:
+			return new CharacterIndexer((char) initials.nextSetBit(0));
+		default:
+			return new CharacterClassIndexer(initials);
+		}
+	}
+}
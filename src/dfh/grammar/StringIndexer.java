@@ -8,9 +8,6 @@
  */
 package dfh.grammar;
 
-import java.util.LinkedList;
-import java.util.List;
-
 /**
  * {@link Indexer} that uses {@link String#indexOf(String, int)}.
  * <p>
@@ -37,17 +34,44 @@ public class StringIndexer implements Indexer {
 	 * @see dfh.grammar.Indexer#index(java.lang.CharSequence, int, int)
 	 */
 	@Override
-	public List<Integer> index(CharSequence s, int start, int end) {
-		List<Integer> list = new LinkedList<Integer>();
-		String st = s.toString();
-		int index;
-		while ((index = st.indexOf(clue, start)) > -1) {
-			if (index + clue.length() > end)
-				break;
-			list.add(index);
-			start = index + 1;
-		}
-		return list;
+	public Offsets index(final CharSequence s, final int start, final int end) {
+		// only if indexOf cannot run past end
+		final String st = s instanceof String && end == s.length() ? (String) s
+				: null;
+		return new Offsets() {
+			private int i = start;
+
+			@Override
+			public int next() {
+				int index = st == null ? find() : st.indexOf(clue, i);
+				if (index == -1 || index + clue.length() > end) {
+					i = end;
+					return -1;
+				}
+				i = index + 1;
+				return index;
+			}
+
+			/**
+			 * {@link String#indexOf(String, int)} for other sequences.
+			 */
+			private int find() {
+				if (clue.length() == 0)
+					return i <= end ? i : -1;
+				char first = clue.charAt(0);
+				for (int lim = end - clue.length(); i <= lim; i++) {
+					if (s.charAt(i) != first)
+						continue;
+					int j = 1;
+					while (j < clue.length()
+							&& s.charAt(i + j) == clue.charAt(j))
+						j++;
+					if (j == clue.length())
+						return i;
+				}
+				return -1;
+			}
+		};
 	}
 
 }
@@ -44,8 +44,10 @@ public class UncachedRepetitionRule extends RepetitionRule {
 					rule.matchTrace(this, null);
 				return null;
 			}
-			if (next == null && cycleCheck())
+			if (next == null && cycleCheck()) {
+				options.session.step();
 				fetchNext();
+			}
 			Match n = next;
 			next = null;
 			if (options.debug)
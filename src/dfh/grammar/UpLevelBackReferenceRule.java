@@ -10,8 +10,6 @@ package dfh.grammar;
 
 import java.util.Map;
 
-import dfh.grammar.SequenceRule.SequenceMatcher;
-
 /**
  * A non-reversible variant on {@link BackReferenceRule} that matches against a
  * match at a particular index in a rule several generations up the hierarchy.
@@ -34,7 +32,6 @@ import dfh.grammar.SequenceRule.SequenceMatcher;
  */
 public class UpLevelBackReferenceRule extends BackReferenceRule {
 	private static final long serialVersionUID = 8L;
-	protected final int level;
 
 	private class UpLevelBackReferenceMatcher extends Matcher {
 
@@ -51,10 +48,7 @@ public class UpLevelBackReferenceRule extends BackReferenceRule {
 				UpLevelBackReferenceRule.this.matchTrace(this);
 			if (fresh) {
 				fresh = false;
-				Matcher mm = master;
-				for (int i = 0; i < level; i++)
-					mm = mm.master;
-				Match m = ((SequenceMatcher) mm).matched.get(index), n = null;
+				Match m = scope.matched[index], n = null;
 				int delta = m.end() - m.start();
 				if (delta == 0) {
 					// zero-width matches always match
@@ -100,9 +94,23 @@ public class UpLevelBackReferenceRule extends BackReferenceRule {
 	 * @param label
 	 * @param index
 	 */
-	public UpLevelBackReferenceRule(Label label, int index, int level) {
+	public UpLevelBackReferenceRule(Label label, int index) {
 		super(label, index);
-		this.level = level;
+	}
+
+	/**
+	 * Generates the back reference rule using the given index. The level is
+	 * ignored: the index always refers to the enclosing rule body.
+	 * 
+	 * @param label
+	 * @param index
+	 * @param level
+	 *            ignored
+	 * @deprecated use {@link #UpLevelBackReferenceRule(Label, int)}
+	 */
+	@Deprecated
+	public UpLevelBackReferenceRule(Label label, int index, int level) {
+		this(label, index);
 	}
 
 	@Override
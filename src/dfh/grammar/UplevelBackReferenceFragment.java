@@ -19,7 +19,7 @@ package dfh.grammar;
  */
 public class UplevelBackReferenceFragment extends RepeatableRuleFragment {
 
-	protected int reference, level = 0;
+	protected int reference;
 
 	/**
 	 * Generates a fragment from the given reference number.
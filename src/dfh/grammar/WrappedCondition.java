@@ -29,4 +29,13 @@ public class WrappedCondition extends Condition {
 	public boolean passes(Match n, Matcher m, CharSequence s) {
 		return inner.passes(n, m, s);
 	}
+
+	@Override
+	public boolean pure() {
+		return inner.pure();
+	}
+
+	Condition inner() {
+		return inner;
+	}
 }
@@ -59,7 +59,10 @@ import org.junit.runners.Suite;
 		WhitespaceDelimiterTest.class,//
 		IndexerTest.class,//
 		IterableTest.class,//
-		GraphTest.class //
+		GraphTest.class,//
+		WidthTest.class,//
+		LongestMatchTest.class,//
+		ForwardLookbehindTest.class //
 })
 public class AllTests {
 }
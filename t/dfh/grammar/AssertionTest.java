@@ -1,6 +1,8 @@
 package dfh.grammar;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -567,4 +569,54 @@ public class AssertionTest {
 		Grammar g = new Grammar("ROOT = ! after /\\B/r /\\w/");
 		assertNotNull(g.matches("a").match());
 	}
+
+	private static void checkParents(Match n) {
+		for (Match c : n.children()) {
+			assertTrue("child knows its parent", c.parent() == n);
+			checkParents(c);
+		}
+	}
+
+	private static void cachedAssertion(Grammar g, String s, String group) {
+		Match n = g.find(s).match();
+		assertNotNull(n);
+		checkParents(n);
+		Match a = n.first(new MatchTest() {
+			@Override
+			public boolean test(Match o) {
+				return o.rule() instanceof Assertion;
+			}
+		});
+		assertEquals(group, a.children()[0].group());
+	}
+
+	@Test
+	public void cachedForwardAssertion() {
+		String[] rules = {
+				//
+				"ROOT = ~+ [ 'a' 'b'+ ] 'a' 'b' | ~+ [ 'a' 'b'+ ] 'a' /\\w/",//
+		};
+		cachedAssertion(new Grammar(rules), "abb", "abb");
+	}
+
+	@Test
+	public void cachedBackwardAssertion() {
+		String[] rules = {
+				//
+				"ROOT = 'a'+ [ ~- 'a'+ 'b' 'c' | ~- 'a'+ 'b' /\\w/ ]",//
+		};
+		cachedAssertion(new Grammar(rules), "aabc", "aa");
+	}
+
+	@Test
+	public void sharedCacheBackwardAssertion() {
+		String[] rules = {
+				//
+				"ROOT = !- 'a' /b|c/ [ 'a' | 'b' ]",//
+		};
+		Grammar g = new Grammar(rules);
+		Matcher m = g.find("cabb");
+		assertEquals("ca", m.match().group());
+		assertNull("lookbehind sees 'a' cached by the alternation", m.match());
+	}
 }
@@ -134,4 +134,115 @@ public class ComplexConditions {
 		assertTrue("parsed group", count == 2);
 	}
 
+	/**
+	 * Condition testing one bit of an integer.
+	 */
+	private static class Bit extends IntegerCondition {
+		private final int bit;
+		private final boolean pure;
+		int calls = 0;
+
+		Bit(int bit, boolean pure) {
+			this.bit = bit;
+			this.pure = pure;
+		}
+
+		@Override
+		public boolean passes(int i) {
+			calls++;
+			return (i & (1 << bit)) != 0;
+		}
+
+		@Override
+		public boolean pure() {
+			return pure;
+		}
+	}
+
+	private static Grammar bitGrammar(String expression, boolean pure,
+			boolean compiled) {
+		Grammar g = new Grammar("ROOT = /\\d++/ (" + expression + ")");
+		for (int i = 0; i < 4; i++) {
+			if (expression.indexOf("b" + i) > -1)
+				g.defineCondition("b" + i, new Bit(i, pure));
+		}
+		g.find("");
+		if (!compiled) {
+			for (Rule r : g.root.subRules(false)) {
+				if (r instanceof ConditionalRule)
+					((ConditionalRule) r).test = null;
+			}
+		}
+		return g;
+	}
+
+	@Test
+	public void compiledAgreesWithTree() {
+		String[] expressions = {
+				//
+				"b0 b1 b2",//
+				"b0 | b1 | !b2",//
+				"(b0 | b1) (b2 | !b3)",//
+				"!(b0 b1) | b2",//
+				"b0 ^ b1 ^ b2",//
+				"(b0 ^ !b1) | (b2 ^ b3)",//
+				"!((b0 b1) ^ (b2 | b3) ^ !b0)",//
+		};
+		for (String e : expressions) {
+			for (boolean pure : new boolean[] { true, false }) {
+				Grammar compiled = bitGrammar(e, pure, true), tree = bitGrammar(
+						e, pure, false);
+				// enough rounds to reorder
+				for (int round = 0; round < 20; round++) {
+					for (int i = 0; i < 16; i++) {
+						String s = Integer.toString(i);
+						assertEquals(e + " on " + i,
+								tree.matches(s).match() != null, compiled
+										.matches(s).match() != null);
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void selectiveConditionsFirst() {
+		String[] rules = {
+		//
+		"ROOT = /\\d++/ (b0 b1 b2 b3)",//
+		};
+		Grammar g = new Grammar(rules);
+		Bit[] bits = new Bit[4];
+		for (int i = 0; i < bits.length; i++) {
+			bits[i] = new Bit(i, true);
+			g.defineCondition("b" + i, bits[i]);
+		}
+		for (int i = 0; i < 1000; i++)
+			g.matches(i % 2 == 0 ? "15" : "7");
+		for (Bit b : bits)
+			b.calls = 0;
+		for (int i = 0; i < 1000; i++)
+			g.matches(i % 2 == 0 ? "15" : "7");
+		// b3 decides the conjunction and should now be tested first
+		assertEquals(1000, bits[3].calls);
+		assertEquals(500, bits[0].calls);
+	}
+
+	@Test
+	public void impureConditionsKeepTheirOrder() {
+		String[] rules = {
+		//
+		"ROOT = /\\d++/ (b0 b1 b2 b3)",//
+		};
+		Grammar g = new Grammar(rules);
+		Bit[] bits = new Bit[4];
+		for (int i = 0; i < bits.length; i++) {
+			bits[i] = new Bit(i, false);
+			g.defineCondition("b" + i, bits[i]);
+		}
+		for (int i = 0; i < 1000; i++)
+			g.matches(i % 2 == 0 ? "15" : "7");
+		// b3 decides the conjunction but cannot be moved ahead
+		assertEquals(1000, bits[0].calls);
+	}
 }
@@ -5,6 +5,10 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
 
 import org.junit.Test;
 
@@ -405,4 +409,192 @@ public class ConditionTest {
 		}
 	}
 
+
+	@Test
+	public void integerSpans() {
+		final int[] parsed = new int[1];
+		IntegerCondition c = new IntegerCondition() {
+			@Override
+			public boolean passes(int i) {
+				parsed[0] = i;
+				return true;
+			}
+		};
+		String[] strings = { "0", "-0", "+7", "-12", "007", "2147483647",
+				"2147483648", "-2147483648", "-2147483649", "", "-", "+",
+				"1-", "1.0", " 1", "99999999999", "\u0661\u0662" };
+		for (String str : strings) {
+			String s = "[" + str + "]";
+			boolean passes = c.passes(s, 1, s.length() - 1);
+			try {
+				int i = Integer.parseInt(str);
+				assertTrue(str, passes);
+				assertEquals(str, i, parsed[0]);
+			} catch (NumberFormatException e) {
+				assertTrue(str, !passes);
+			}
+		}
+	}
+
+	@Test
+	public void floatingPointSpans() {
+		final double[] parsed = new double[1];
+		FloatingPointCondition c = new FloatingPointCondition() {
+			@Override
+			public boolean passes(double d) {
+				parsed[0] = d;
+				return true;
+			}
+		};
+		List<String> strings = new ArrayList<String>(Arrays.asList("0",
+				"-0", "0.0", "1.", ".5", "-.5e-3", "1e22", "1e23", "1e-22",
+				"123456789012345", "1234567890123456789", "0.1", "3.14159",
+				"1E5", "1e+5", "1e", "1e+", ".", "-", "", "NaN", "Infinity",
+				"0x1p3", "1d", " 1.5 ", "1.2.3", "4.9e-324", "1e400"));
+		Random r = new Random(5);
+		for (int i = 0; i < 1000; i++)
+			strings.add(Double.toString(r.nextDouble() * Math.pow(10, r
+					.nextInt(40) - 20)));
+		for (String str : strings) {
+			String s = "[" + str + "]";
+			boolean passes = c.passes(s, 1, s.length() - 1);
+			try {
+				double d = Double.parseDouble(str);
+				assertTrue(str, passes);
+				assertEquals(str, Double.doubleToLongBits(d), Double
+						.doubleToLongBits(parsed[0]));
+			} catch (NumberFormatException e) {
+				assertTrue(str, !passes);
+			}
+		}
+	}
+
+	@Test
+	public void spanInLookbehind() {
+		String[] rules = {
+		//
+		"<ROOT> = ~- <n> ':' <n>",//
+		"<n> = /\\d++/r (small)",//
+		};
+		Grammar g = new Grammar(rules);
+		g.defineCondition("small", new Condition() {
+			@Override
+			public boolean passes(CharSequence s, int start, int end) {
+				// 10 would be 01 if read backwards
+				return s.charAt(start) == '1' && end - start == 2;
+			}
+		});
+		Matcher m = g.find("10:10 01:10");
+		int count = 0;
+		while (m.match() != null)
+			count++;
+		assertEquals(1, count);
+	}
+
+	private static int conditionCalls(final boolean pure) {
+		String[] rules = {
+		//
+		"<ROOT> = <w> 'a' | <w> 'b' | <w> 'c'",//
+		"<w> = /\\d++/ (counted)",//
+		};
+		Grammar g = new Grammar(rules);
+		final int[] calls = { 0 };
+		g.defineCondition("counted", new IntegerCondition() {
+			@Override
+			public boolean passes(int i) {
+				calls[0]++;
+				return i % 2 == 0;
+			}
+
+			@Override
+			public boolean pure() {
+				return pure;
+			}
+		});
+		Matcher m = g.find("12c 13c 14b", new Options().study(false));
+		int count = 0;
+		while (m.match() != null)
+			count++;
+		assertEquals(2, count);
+		return calls[0];
+	}
+
+	@Test
+	public void pureConditionsMemoized() {
+		int impure = conditionCalls(false), pure = conditionCalls(true);
+		assertTrue("pure condition tested less often", pure < impure);
+	}
+
+	private static List<String> conditionalTerminals(String string,
+			final boolean pure, boolean study) {
+		String[] rules = {
+		//
+		"<ROOT> = <n> 'x' | !- [ <n> ':' ] <n>",//
+		"<n> = /\\d++/r (even)",//
+		};
+		Grammar g = new Grammar(rules);
+		g.defineCondition("even", new IntegerCondition() {
+			@Override
+			public boolean passes(int i) {
+				return i % 2 == 0;
+			}
+
+			@Override
+			public boolean pure() {
+				return pure;
+			}
+		});
+		List<String> list = new ArrayList<String>();
+		Matcher m = g.find(string, new Options().study(study));
+		Match n;
+		while ((n = m.match()) != null)
+			list.add(n.group());
+		return list;
+	}
+
+	@Test
+	public void conditionalTerminalsStudied() {
+		Random r = new Random(5);
+		for (int i = 0; i < 50; i++) {
+			StringBuilder b = new StringBuilder();
+			for (int j = 0, lim = r.nextInt(12); j < lim; j++)
+				b.append("12x:3 ".charAt(r.nextInt(6)));
+			String s = b.toString();
+			List<String> expected = conditionalTerminals(s, false, false);
+			assertEquals(s, expected, conditionalTerminals(s, false, true));
+			assertEquals(s, expected, conditionalTerminals(s, true, false));
+			assertEquals(s, expected, conditionalTerminals(s, true, true));
+		}
+		assertEquals(Arrays.asList("12x", "2"),
+				conditionalTerminals("1x 12x 3:2", true, true));
+	}
+
+	@Test
+	public void fusedConditionTestedOnce() {
+		String[] rules = {
+		//
+		"<ROOT> = <w> 'a' | <w> 'b' | <w> 'c'",//
+		"<w> = /\\b\\d++/ (counted)",//
+		};
+		Grammar g = new Grammar(rules);
+		final int[] calls = { 0 };
+		g.defineCondition("counted", new IntegerCondition() {
+			@Override
+			public boolean passes(int i) {
+				calls[0]++;
+				return i % 2 == 0;
+			}
+
+			@Override
+			public boolean pure() {
+				return true;
+			}
+		});
+		Matcher m = g.find("12c 13c 14b", new Options().study(true));
+		int count = 0;
+		while (m.match() != null)
+			count++;
+		assertEquals(2, count);
+		assertEquals("one test per number", 3, calls[0]);
+	}
 }
@@ -0,0 +1,144 @@
+package dfh.grammar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Makes sure backward assertions evaluated forward behave just as they do
+ * when evaluated against the reversed character sequence.
+ * <p>
+ * 
+ * @author David F. Houghton - Oct 19, 2026
+ * 
+ */
+public class ForwardLookbehindTest {
+
+	/**
+	 * @return the backward assertions in the grammar, which must have been
+	 *         used so that they know whether they can be evaluated forward
+	 */
+	private static List<Assertion> lookbehinds(Grammar g) {
+		List<Assertion> list = new ArrayList<Assertion>();
+		for (Rule r : g.root.subRules(false)) {
+			if (r instanceof Assertion && !((Assertion) r).forward
+					&& r.unreversed == null)
+				list.add((Assertion) r);
+		}
+		return list;
+	}
+
+	private static List<String> matches(Grammar g, String s) {
+		List<String> list = new ArrayList<String>();
+		Matcher m = g.find(s, new Options().allowOverlap(true));
+		Match n;
+		while ((n = m.match()) != null)
+			list.add(n.toString());
+		return list;
+	}
+
+	/**
+	 * Compares the forward evaluation with reversal on random strings.
+	 */
+	private static void compare(String[] rules, boolean forward) {
+		Grammar g = new Grammar(rules), reversing = new Grammar(rules);
+		g.find("");
+		reversing.find("");
+		for (Assertion a : lookbehinds(g)) {
+			if (forward)
+				assertNotNull(a.behind);
+			else
+				assertNull(a.behind);
+		}
+		for (Assertion a : lookbehinds(reversing))
+			a.behind = null;
+		Random r = new Random(17);
+		for (int i = 0; i < 50; i++) {
+			StringBuilder b = new StringBuilder();
+			for (int j = 0, lim = r.nextInt(10); j < lim; j++)
+				b.append("ab@".charAt(r.nextInt(3)));
+			String s = b.toString();
+			assertEquals(s, matches(reversing, s), matches(g, s));
+		}
+	}
+
+	@Test
+	public void literal() {
+		String[] rules = {
+				//
+				"ROOT = ~- '@' /\\w/",//
+		};
+		compare(rules, true);
+	}
+
+	@Test
+	public void negative() {
+		String[] rules = {
+				//
+				"ROOT = !- 'a' /\\w/",//
+		};
+		compare(rules, true);
+	}
+
+	@Test
+	public void characterClass() {
+		String[] rules = {
+				//
+				"ROOT = ~- [ /[@b]/r 'a' ] 'b'",//
+		};
+		compare(rules, true);
+	}
+
+	@Test
+	public void fixedAlternation() {
+		String[] rules = {
+				//
+				"ROOT = ~- [ '@' | /[ab]/r | 'a' ] [ 'a' | 'b' ]{2} 'b'",//
+		};
+		compare(rules, true);
+	}
+
+	@Test
+	public void negativeAlternationAndRepetition() {
+		String[] rules = {
+				//
+				"ROOT = !- <s> 'a'",//
+				"s = [ 'b' | 'ab' ]{1,3} | '@' 'a'?",//
+		};
+		compare(rules, true);
+	}
+
+	@Test
+	public void ambiguous() {
+		String[] rules = {
+				//
+				"ROOT = ~- <s> 'a'",//
+				"s = [ 'b' | 'ab' ]{1,3} | '@' 'a'?",//
+		};
+		compare(rules, false);
+	}
+
+	@Test
+	public void unbounded() {
+		String[] rules = {
+				//
+				"ROOT = ~- [ '@' 'a'+ ] 'b'",//
+		};
+		compare(rules, false);
+	}
+
+	@Test
+	public void anchored() {
+		String[] rules = {
+				//
+				"ROOT = ~- /^a/r 'b'",//
+		};
+		compare(rules, false);
+	}
+}
@@ -2,6 +2,11 @@ package dfh.grammar;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
 import java.util.regex.Pattern;
 
 import org.junit.Test;
@@ -64,4 +69,316 @@ public class IndexerTest {
 		assertEquals(1, count);
 	}
 
+	private static List<Integer> offsets(Indexer i, CharSequence s, int start,
+			int end) {
+		List<Integer> list = new ArrayList<Integer>();
+		Indexer.Offsets offsets = i.index(s, start, end);
+		int o;
+		while ((o = offsets.next()) != -1)
+			list.add(o);
+		assertEquals("exhausted", -1, offsets.next());
+		return list;
+	}
+
+	@Test
+	public void offsets() {
+		String s = "abcabcaab";
+		Indexer[] indexers = { new CharacterIndexer('a'),
+				new StringIndexer("ab"),
+				new PatternIndexer(Pattern.compile("a(?=b)")) };
+		List<Integer> chars = Arrays.asList(0, 3, 6, 7), strings = Arrays
+				.asList(0, 3, 7);
+		for (CharSequence cs : new CharSequence[] { s, new StringBuilder(s) }) {
+			assertEquals(chars, offsets(indexers[0], cs, 0, s.length()));
+			assertEquals(Arrays.asList(3, 6), offsets(indexers[0], cs, 1, 7));
+			for (int i = 1; i < indexers.length; i++) {
+				assertEquals(strings, offsets(indexers[i], cs, 0, s.length()));
+				assertEquals(Arrays.asList(3), offsets(indexers[i], cs, 1, 8));
+			}
+		}
+	}
+
+	@SuppressWarnings("serial")
+	@Test
+	public void lazy() {
+		Grammar g = new Grammar("foo = 'cat' | 'dog'");
+		final int[] requested = { 0 };
+		Indexer i = new Indexer() {
+			@Override
+			public Offsets index(CharSequence s, int start, int end) {
+				final Offsets offsets = new CharacterIndexer('c').index(s,
+						start, end);
+				return new Offsets() {
+					@Override
+					public int next() {
+						requested[0]++;
+						return offsets.next();
+					}
+				};
+			}
+		};
+		Matcher m = g.find("cat cat cat cat", new Options().indexer(i));
+		assertEquals("cat", m.match().group());
+		assertTrue("offsets requested on demand", requested[0] < 4);
+	}
+
+	@Test
+	public void ahoCorasick() {
+		String[] clues = { "ab", "b", "abc", "bca", "c\u00e9", "\u00e9\u00e9" };
+		Indexer i = new AhoCorasickIndexer(clues);
+		Random r = new Random(3);
+		for (int trial = 0; trial < 200; trial++) {
+			StringBuilder b = new StringBuilder();
+			for (int j = 0, lim = r.nextInt(20); j < lim; j++)
+				b.append("abcx\u00e9".charAt(r.nextInt(5)));
+			String s = b.toString();
+			int start = s.length() == 0 ? 0 : r.nextInt(s.length());
+			int end = start + r.nextInt(s.length() - start + 1);
+			List<Integer> expected = new ArrayList<Integer>();
+			for (int o = start; o < end; o++) {
+				for (String c : clues) {
+					if (o + c.length() <= end && s.startsWith(c, o)) {
+						expected.add(o);
+						break;
+					}
+				}
+			}
+			String msg = s + " [" + start + ", " + end + ")";
+			assertEquals(msg, expected, offsets(i, s, start, end));
+			assertEquals(msg, expected,
+					offsets(i, new StringBuilder(s), start, end));
+		}
+	}
+
+	@Test
+	public void ahoCorasickCaseInsensitive() {
+		Indexer i = new AhoCorasickIndexer(Arrays.asList("Cat", "dOG"), true);
+		assertEquals(Arrays.asList(0, 4, 8),
+				offsets(i, "cAT DOG dog", 0, 11));
+		i = new AhoCorasickIndexer("Cat", "dOG");
+		assertEquals(Arrays.asList(0), offsets(i, "Cat DOG dog", 0, 11));
+	}
+
+	@Test
+	public void ahoCorasickGrammar() {
+		Grammar g = new Grammar("foo = 'cat' | 'dog' | 'monkey'");
+		String s = "cat dogmonkey bird dog";
+		Indexer i = new AhoCorasickIndexer("cat", "dog", "monkey");
+		List<String> expected = new ArrayList<String>();
+		List<String> found = new ArrayList<String>();
+		Matcher m = g.find(s);
+		Match n;
+		while ((n = m.match()) != null)
+			expected.add(n.group());
+		m = g.find(s, new Options().indexer(i));
+		while ((n = m.match()) != null)
+			found.add(n.group());
+		assertEquals(expected, found);
+	}
+
+	@Test
+	public void characterClass() {
+		Indexer i = new CharacterClassIndexer('a', 'c', '\u00e9');
+		assertEquals(Arrays.asList(0, 2, 4, 5),
+				offsets(i, "abc-c\u00e9", 0, 6));
+		assertEquals(Arrays.asList(2), offsets(i, "abc-c\u00e9", 1, 4));
+		assertEquals("CharacterClassIndexer([ac\\u00E9])", i.toString());
+	}
+
+	private static void first(String re, String expected) {
+		BitSet chars = new RegexFirst(Pattern.compile(re)).chars;
+		if (expected == null)
+			assertNull("first characters of /" + re + "/", chars);
+		else {
+			BitSet b = new BitSet();
+			for (char c : expected.toCharArray())
+				b.set(c);
+			assertEquals("first characters of /" + re + "/", b, chars);
+		}
+	}
+
+	@Test
+	public void regexFirst() {
+		first("abc", "a");
+		first("a|bc", "ab");
+		first("a?b", "ab");
+		first("(?:a*|b)c", "abc");
+		first("[a-c]x", "abc");
+		first("[]a]", "]a");
+		first("\\d{0,2}-", "0123456789-");
+		first("\\bx", "x");
+		first("(?=a)b", "b");
+		first("(?<n>q)", "q");
+		first("\\Q+\\E", "+");
+		first("\\.\\u0041", ".");
+		first("(?i)cat", null);
+		first(".", null);
+		first("\\W", null);
+		first("a*", null);
+		first("[a&&b]", null);
+		first("(a)\\1", null);
+		BitSet b = new RegexFirst(Pattern.compile("[^a]")).chars;
+		assertTrue(!b.get('a') && b.get('b') && b.get('\u00e9'));
+		b = new RegexFirst(Pattern.compile("ca[t]",
+				Pattern.CASE_INSENSITIVE)).chars;
+		assertTrue(b.get('c') && b.get('C') && b.cardinality() == 2);
+	}
+
+	@Test
+	public void derivedIndexers() {
+		assertEquals("StringIndexer(cat)", new Grammar("ROOT = 'cat'")
+				.derivedIndexer().toString());
+		assertEquals("CharacterIndexer(c)", new Grammar(
+				"ROOT = 'c' /\\d/").derivedIndexer().toString());
+		assertEquals("AhoCorasickIndexer(cat, dog)", new Grammar(
+				"ROOT = 'cat' | 'dog'").derivedIndexer().toString());
+		assertEquals("CharacterClassIndexer([0-9x])", new Grammar(new String[] {
+				"ROOT = <a>? 'x'", "a = /\\d+/" }).derivedIndexer().toString());
+		assertEquals("CharacterClassIndexer([(x])", new Grammar(
+				"ROOT = '(' <ROOT> ')' | 'x'").derivedIndexer().toString());
+		assertNull("zero-width match possible",
+				new Grammar("ROOT = 'a'*").derivedIndexer());
+		assertNull("left recursion", new Grammar(new String[] {
+				"ROOT = <AP>", "AP = <DP>? 'a'", "DP = <AP> 's'" }).derivedIndexer());
+		assertNull("unanalyzed regex",
+				new Grammar("ROOT = /.x/").derivedIndexer());
+	}
+
+	@Test
+	public void derivedIndexerAgrees() {
+		String[][] grammars = {
+				{ "ROOT = 'ab' | 'b' 'a'+ | 'c'" },
+				{ "ROOT = <a>? 'c' <a>", "a = /[ab]++/" },
+				{ "ROOT = !- 'a' /b|c/i [ 'a' | 'b' ]" },
+				{ "ROOT = '(' <ROOT> ')' | 'a'" },
+		};
+		Random r = new Random(5);
+		for (String[] rules : grammars) {
+			Grammar g = new Grammar(rules);
+			assertNotNull(g.derivedIndexer());
+			for (int trial = 0; trial < 50; trial++) {
+				StringBuilder b = new StringBuilder();
+				for (int j = 0, lim = r.nextInt(15); j < lim; j++)
+					b.append("abcC()".charAt(r.nextInt(6)));
+				String s = b.toString();
+				for (boolean overlap : new boolean[] { false, true }) {
+					List<String> expected = new ArrayList<String>();
+					List<String> found = new ArrayList<String>();
+					Options opt = new Options().allowOverlap(overlap);
+					Matcher m = g.find(s, new Options(opt).autoIndex(false));
+					Match n;
+					while ((n = m.match()) != null)
+						expected.add(n.toString());
+					m = g.find(s, opt);
+					while ((n = m.match()) != null)
+						found.add(n.toString());
+					assertEquals(rules[0] + " on " + s, expected, found);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void requiredLiterals() {
+		assertEquals("'@' at 1..", new Grammar("ROOT = /\\w+/ '@' /\\w+/")
+				.required().toString());
+		assertEquals("'xyz' at 4..4", new Grammar(
+				"ROOT = 'ab' /\\d{2}/ 'xyz'").required().toString());
+		assertEquals("':' at 1..2", new Grammar(
+				"ROOT = 'a' ':' | 'bb' ':' 'c'").required().toString());
+		assertEquals("'b' at 0..0", new Grammar("ROOT = 'b'+ /c*/ 'b'?")
+				.required().toString());
+		assertNull(new Grammar("ROOT = 'a' | 'b'").required());
+		assertNull(new Grammar("ROOT = 'a'* 'b'? ~ 'c'").required());
+	}
+
+	@Test
+	public void prefilter() {
+		Indexer i = new PrefilterIndexer(new RequiredLiteral("@", 1, 3), null);
+		String s = "aaaaaaa@aaaa@@";
+		List<Integer> expected = Arrays.asList(4, 5, 6, 9, 10, 11, 12);
+		assertEquals(expected, offsets(i, s, 0, s.length()));
+		assertEquals(expected, offsets(i, new StringBuilder(s), 0, s.length()));
+		i = new PrefilterIndexer(new RequiredLiteral("@", 1, 3),
+				new CharacterIndexer('a'));
+		assertEquals(Arrays.asList(4, 5, 6, 9, 10, 11),
+				offsets(i, s, 0, s.length()));
+		i = new PrefilterIndexer(new RequiredLiteral("aa@", 0, 0), null);
+		assertEquals(Arrays.asList(5), offsets(i, new StringBuilder(s), 0, 12));
+		assertEquals(Arrays.asList(), offsets(i, s, 0, 7));
+	}
+
+	@Test
+	public void prefilterAgrees() {
+		String[][] grammars = {
+				{ "ROOT = /[ab]+/ '@' /[ab]+/" },
+				{ "ROOT = <a> 'ab' | <a>? 'c' 'ab'", "a = /[bc]{1,3}/" },
+				{ "ROOT = !- 'a' /b|c/ 'a'+ 'bb'" },
+		};
+		Random r = new Random(9);
+		for (String[] rules : grammars) {
+			Grammar g = new Grammar(rules);
+			assertNotNull(g.required());
+			for (int trial = 0; trial < 50; trial++) {
+				StringBuilder b = new StringBuilder();
+				for (int j = 0, lim = r.nextInt(25); j < lim; j++)
+					b.append("abc@".charAt(r.nextInt(4)));
+				for (CharSequence s : new CharSequence[] { b.toString(), b }) {
+					List<String> expected = new ArrayList<String>();
+					List<String> found = new ArrayList<String>();
+					Matcher m = g.find(s, new Options().autoIndex(false));
+					Match n;
+					while ((n = m.match()) != null)
+						expected.add(n.toString());
+					m = g.find(s);
+					while ((n = m.match()) != null)
+						found.add(n.toString());
+					assertEquals(rules[0] + " on " + s, expected, found);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void offsetSet() {
+		OffsetSet os = new OffsetSet(10);
+		assertTrue(os.add(12));
+		assertTrue(os.add(20));
+		assertFalse(os.add(12));
+		assertTrue(os.add(4));
+		assertEquals(Arrays.asList(4, 12, 20), new ArrayList<Integer>(os));
+		assertEquals(3, os.size());
+		assertTrue(os.contains(4));
+		assertFalse(os.contains(5));
+		assertEquals(12, os.next(5));
+		assertEquals(-1, os.next(21));
+		OffsetSet other = new OffsetSet(4);
+		other.add(13);
+		other.add(20);
+		assertTrue(os.addAll(other));
+		assertEquals(Arrays.asList(4, 12, 13, 20), new ArrayList<Integer>(os));
+		assertEquals(4, os.size());
+	}
+
+	@Test
+	public void studiedOffsets() {
+		Grammar g = new Grammar("ROOT = /a+/ | 'b'");
+		String s = "xaaabxaab aa";
+		for (int start = 0; start < s.length(); start++) {
+			for (boolean overlap : new boolean[] { false, true }) {
+				List<String> expected = new ArrayList<String>();
+				List<String> found = new ArrayList<String>();
+				Options opt = new Options().start(start).allowOverlap(overlap)
+						.autoIndex(false);
+				Matcher m = g.find(s, opt);
+				Match n;
+				while ((n = m.match()) != null)
+					expected.add(n.toString());
+				m = g.find(s, new Options(opt).study(true));
+				while ((n = m.match()) != null)
+					found.add(n.toString());
+				assertEquals(start + " " + overlap, expected, found);
+			}
+		}
+	}
 }
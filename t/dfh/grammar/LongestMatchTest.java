@@ -0,0 +1,110 @@
+package dfh.grammar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Makes sure longest-token matching finds the same matches that exhaustive
+ * enumeration of all matches would.
+ * <p>
+ *
+ * @author David F. Houghton - Oct 19, 2026
+ *
+ */
+public class LongestMatchTest {
+
+	/**
+	 * Compares LTM at every offset with the widest matches found by
+	 * enumerating all matches.
+	 */
+	private static void compare(Grammar g, String string) {
+		for (int i = 0; i <= string.length(); i++) {
+			String s = string.substring(i);
+			List<String> all = new ArrayList<String>();
+			int max = -1;
+			Matcher m = g.lookingAt(s, new Options()
+					.longestMatch(false).allowOverlap(true));
+			Match n;
+			while ((n = m.match()) != null) {
+				if (n.end() > max) {
+					all.clear();
+					max = n.end();
+				}
+				if (n.end() == max)
+					all.add(n.toString());
+			}
+			m = g.lookingAt(s, new Options());
+			n = m.match();
+			if (all.isEmpty())
+				assertEquals(null, n);
+			else
+				assertEquals(string + " at " + i, all.get(0), n.toString());
+			List<String> ties = new ArrayList<String>();
+			m = g.lookingAt(s, new Options().allowOverlap(true));
+			while ((n = m.match()) != null)
+				ties.add(n.toString());
+			assertEquals(string + " at " + i, all, ties);
+		}
+	}
+
+	@Test
+	public void tiesGoToEarlierAlternates() {
+		String[] rules = {
+				//
+				"ROOT = <x> | <y> | <z>",//
+				"x = 'a'",//
+				"y = 'a' /b/",//
+				"z = 'ab'",//
+		};
+		Grammar g = new Grammar(rules);
+		Match n = g.find("ab").match();
+		assertTrue(n.children()[0].hasLabel("y"));
+	}
+
+	@Test
+	public void laterAlternatesCanWin() {
+		String[] rules = {
+				//
+				"ROOT = 'a' | 'a' 'b' 'c' | 'ab'",//
+		};
+		Grammar g = new Grammar(rules);
+		Matcher m = g.find("abcab");
+		assertEquals("abc", m.match().group());
+		assertEquals("ab", m.match().group());
+	}
+
+	@Test
+	public void ambiguous() {
+		String[] rules = {
+				//
+				"ROOT = <s>+ | 'b' <ROOT>? | <t> 'a'",//
+				"s = 'a' | 'ab' | 'a' 'b' | <t>",//
+				"t = 'b'{2} | 'ba'",//
+		};
+		Grammar g = new Grammar(rules);
+		Random r = new Random(7);
+		for (int i = 0; i < 50; i++) {
+			StringBuilder b = new StringBuilder();
+			for (int j = 0, lim = r.nextInt(8); j < lim; j++)
+				b.append(r.nextBoolean() ? 'a' : 'b');
+			compare(g, b.toString());
+		}
+	}
+
+	@Test
+	public void recursive() {
+		String[] rules = {
+				//
+				"ROOT = '(' <ROOT> ')' | '(' <ROOT> | 'x' | '(' 'x'",//
+		};
+		Grammar g = new Grammar(rules);
+		compare(g, "((x)");
+		compare(g, "(((x)))x");
+	}
+}
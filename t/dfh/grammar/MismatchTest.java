@@ -98,4 +98,21 @@ public class MismatchTest {
 		assertNotNull(m.rightmostMatch());
 		assertNotNull("rightmost has group", m.rightmostMatch().group());
 	}
+
+	@Test
+	public void rightmostWithRequiredLiteral() {
+		Grammar g = new Grammar("ROOT = 'a' /b+/ '@@' /c/");
+		Matcher m = g.find("xx abbb yy", opt);
+		assertNull(m.match());
+		assertEquals("(/b+/: 4, 7)", m.rightmostMatch().toString());
+		m = g.find("xx abb", opt);
+		assertNull(m.match());
+		assertEquals("(/b+/: 4, 6)", m.rightmostMatch().toString());
+		m = g.lookingAt("abbb yy", opt);
+		assertNull(m.match());
+		assertEquals("(/b+/: 1, 4)", m.rightmostMatch().toString());
+		m = g.matches("abbb", opt);
+		assertNull(m.match());
+		assertEquals("(/b+/: 1, 4)", m.rightmostMatch().toString());
+	}
 }
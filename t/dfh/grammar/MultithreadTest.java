@@ -1,7 +1,14 @@
 package dfh.grammar;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.BeforeClass;
@@ -96,4 +103,429 @@ public class MultithreadTest {
 		}
 		assertEquals("got all matches", matchCount.get(), count.get());
 	}
+
+	@Test
+	public void parallelStudy() {
+		Grammar g = new Grammar(new String[] {
+				//
+				"ROOT = <a> | <b> | <c>",//
+				"a = 'foo' <s> /bar/",//
+				"b = /quux/ <s> <z>",//
+				"c = !- 'x' /[a-z]{3}/r <s> 'quux'",//
+				"s = /\\s++/",//
+				"z = 'baz' (less)",//
+		});
+		g.defineCondition("less", new Condition() {
+			@Override
+			public boolean passes(Match n, Matcher m, CharSequence s) {
+				return n.start() < 1000;
+			}
+		});
+		StringBuilder b = new StringBuilder();
+		for (int i = 0; i < MULTIPLIER; i++) {
+			for (String phrase : testPhrases)
+				b.append(phrase).append(' ');
+		}
+		String s = b.toString();
+		LinkedList<String> expected = new LinkedList<String>(), found = new LinkedList<String>();
+		Options opt = new Options().study(true);
+		Matcher m = g.find(s, opt);
+		Match n;
+		while ((n = m.match()) != null)
+			expected.add(n.toString());
+		m = g.find(s, new Options(opt).parallelism(4));
+		while ((n = m.match()) != null)
+			found.add(n.toString());
+		assertFalse(expected.isEmpty());
+		assertEquals(expected, found);
+	}
+
+	@Test
+	public void chunkedFind() {
+		String[][] grammars = {
+				//
+				{ "ROOT = <x> | <x> 'c'", "x = /[ab]+/" },//
+				{ "ROOT = !- 'a' /b+/ 'c'?" },//
+				{ "ROOT = 'a' /[^@]*/ '@' 'b'" },//
+				{ "ROOT = [ 'ab' | 'a' ] /b?/" },//
+				{ "ROOT = <a> | 'b'", "a = 'a' <a>? 'b'" },//
+		};
+		Random r = new Random(3);
+		for (String[] rules : grammars) {
+			Grammar g = new Grammar(rules);
+			for (int trial = 0; trial < 20; trial++) {
+				StringBuilder b = new StringBuilder();
+				for (int i = 0, lim = r.nextInt(60); i < lim; i++)
+					b.append("aabc@ ".charAt(r.nextInt(6)));
+				String s = b.toString();
+				for (int variant = 0; variant < 4; variant++) {
+					Options opt = new Options().allowOverlap(variant % 2 == 1)
+							.longestMatch(variant < 2);
+					List<String> expected = new ArrayList<String>(), found = new ArrayList<String>();
+					Matcher m = g.find(s, opt);
+					Match n;
+					while ((n = m.match()) != null)
+						expected.add(n.start() + ":" + n.group());
+					m = g.find(s, new Options(opt).parallelism(3).chunkSize(
+							1 + r.nextInt(5)));
+					while ((n = m.match()) != null)
+						found.add(n.start() + ":" + n.group());
+					assertEquals(rules[0] + " on " + s, expected, found);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void abandonedChunkedFind() throws InterruptedException {
+		Grammar g = new Grammar("ROOT = 'a' /b*/");
+		String s = "abbbabbbab abab aaab ababbbbb abab";
+		for (int i = 0; i < 4; i++)
+			s += s;
+		Options opt = new Options().study(false).parallelism(3).chunkSize(8);
+		int before = Thread.activeCount();
+		for (int i = 0; i < 100; i++)
+			assertEquals("abbb", g.find(s, opt).match().group());
+		assertTrue(Thread.activeCount() <= before + opt.parallelism());
+	}
+
+	@Test
+	public void mixedParallelism() {
+		Grammar g = new Grammar("ROOT = 'a' /b*/");
+		String s = "abbbabbbab abab aaab ababbbbb abab";
+		for (int i = 0; i < 4; i++)
+			s += s;
+		Options opt = new Options().study(false);
+		String expected = groups(g.find(s, opt));
+		Matcher m = g.find(s, new Options(opt).parallelism(2).chunkSize(16));
+		Match first = m.match();
+		// a larger pool replaces the one the first matcher is still using
+		assertEquals(expected,
+				groups(g.find(s, new Options(opt).parallelism(4).chunkSize(16))));
+		assertEquals(expected, first.group() + "|" + groups(m));
+	}
+
+	@Test
+	public void chunkedRightmost() {
+		Grammar g = new Grammar("ROOT = 'a' /b+/ '@@' /c/");
+		String s = "abbbb@@c xx abb xx abbb@ xx a yy";
+		Options opt = new Options().keepRightmost(true);
+		Matcher m = g.find(s, opt);
+		assertEquals("abbbb@@c", m.match().group());
+		assertNull(m.match());
+		Match rightmost = m.rightmostMatch();
+		assertNotNull(rightmost);
+		m = g.find(s, new Options(opt).parallelism(2).chunkSize(4));
+		assertEquals("abbbb@@c", m.match().group());
+		assertNull(m.match());
+		assertEquals(rightmost.toString(), m.rightmostMatch().toString());
+	}
+
+	@Test
+	public void chunkedDeadline() {
+		Grammar g = new Grammar(new String[] { "ROOT = <a>", "a = 'x' | 'y'" });
+		// each step takes a while, but no chunk takes longer than the deadline
+		Runnable slow = new Runnable() {
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(20);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		};
+		Options opt = new Options().study(false).parallelism(2).chunkSize(1)
+				.yieldQuantum(1).yieldHook(slow);
+		String s = "xyxyxyxyxyxyxyxyxyxyxyxyxyxyxyxyxyxyxyxy";
+		assertEquals(2 * s.length(), groups(g.find(s, opt)).length());
+		opt.deadline(java.time.Duration.ofMillis(100));
+		try {
+			groups(g.find(s, opt));
+			fail("chunks did not share the deadline");
+		} catch (MatchAbortedException e) {
+		}
+	}
+
+	/**
+	 * Runs the given code on a new thread, interrupts the thread once the
+	 * grammar is well under way, and returns what the code threw.
+	 */
+	private static Throwable interrupt(final Runnable r, final AtomicInteger steps)
+			throws InterruptedException {
+		final Throwable[] thrown = { null };
+		Thread t = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					r.run();
+				} catch (Throwable e) {
+					thrown[0] = e;
+				}
+			}
+		});
+		t.start();
+		while (steps.get() < 10)
+			Thread.sleep(10);
+		t.interrupt();
+		t.join(5000);
+		assertFalse("interrupted consumer still blocked", t.isAlive());
+		// the threads working for the consumer stop too
+		Thread.sleep(100);
+		int n = steps.get();
+		Thread.sleep(300);
+		assertEquals(n, steps.get());
+		return thrown[0];
+	}
+
+	private static Options exponential(final AtomicInteger steps) {
+		return new Options().study(false).autoIndex(false).parallelism(2)
+				.chunkSize(100).yieldQuantum(1 << 10)
+				.yieldHook(new Runnable() {
+					@Override
+					public void run() {
+						steps.incrementAndGet();
+					}
+				});
+	}
+
+	@Test
+	public void interruptChunkedFind() throws InterruptedException {
+		final Grammar g = new Grammar("rule = [ 'a' | 'aa' ]+ [ 'b' | 'c' ]");
+		final AtomicInteger steps = new AtomicInteger();
+		final Options opt = exponential(steps);
+		StringBuilder b = new StringBuilder();
+		for (int i = 0; i < 200; i++)
+			b.append('a');
+		final String s = b.toString();
+		Throwable e = interrupt(new Runnable() {
+			@Override
+			public void run() {
+				g.find(s, opt).match();
+			}
+		}, steps);
+		assertTrue(String.valueOf(e), e instanceof MatchCancelledException);
+	}
+
+	@Test
+	public void interruptFindAll() throws InterruptedException {
+		final Grammar g = new Grammar("rule = [ 'a' | 'aa' ]+ [ 'b' | 'c' ]");
+		final AtomicInteger steps = new AtomicInteger();
+		final Options opt = exponential(steps);
+		StringBuilder b = new StringBuilder();
+		for (int i = 0; i < 60; i++)
+			b.append('a');
+		final List<String> inputs = Collections.nCopies(8, b.toString());
+		final ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Throwable e = interrupt(new Runnable() {
+				@Override
+				public void run() {
+					g.findAll(inputs, opt, executor);
+				}
+			}, steps);
+			assertTrue(String.valueOf(e), e instanceof MatchCancelledException);
+		} finally {
+			executor.shutdown();
+		}
+		assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void drainCancelledFindAll() throws InterruptedException {
+		final Grammar g = new Grammar("rule = [ 'a' | 'aa' ]+ [ 'b' | 'c' ]");
+		final AtomicInteger steps = new AtomicInteger();
+		final Options opt = exponential(steps);
+		StringBuilder b = new StringBuilder();
+		for (int i = 0; i < 60; i++)
+			b.append('a');
+		final List<String> inputs = Collections.nCopies(8, b.toString());
+		final ExecutorService executor = Executors.newFixedThreadPool(2);
+		final int[] drained = { 0 };
+		try {
+			Throwable e = interrupt(new Runnable() {
+				@Override
+				public void run() {
+					Iterator<BatchResult> i = g.findAll(inputs, opt, executor,
+							true);
+					try {
+						while (i.hasNext())
+							i.next();
+					} catch (MatchCancelledException e) {
+						// the consumer carries on; no search is left to block it
+						Thread.interrupted();
+						while (i.hasNext()) {
+							assertNotNull(i.next().error());
+							drained[0]++;
+						}
+						throw e;
+					}
+				}
+			}, steps);
+			assertTrue(String.valueOf(e), e instanceof MatchCancelledException);
+			assertTrue(drained[0] > 0 && drained[0] <= inputs.size());
+		} finally {
+			executor.shutdown();
+		}
+		assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void frozen() throws InterruptedException {
+		final Grammar g = new Grammar(new String[] {
+				//
+				"ROOT = <a> | <b>",//
+				"a = <foo> /\\s++/ /bar/",//
+				"b = /quux/ /\\s++/ 'baz' (short)",//
+		});
+		try {
+			g.freeze();
+			fail("froze incomplete grammar");
+		} catch (GrammarException e) {
+		}
+		Condition c = new Condition() {
+			@Override
+			public boolean passes(Match n, Matcher m, CharSequence s) {
+				return n.length() < 10;
+			}
+		};
+		g.defineRule("foo", "foo");
+		g.defineCondition("short", c);
+		final String s = testPhrases[0] + testPhrases[1];
+		final String expected = matches(g, s);
+		assertEquals("foo    bar|quux\nbaz|", expected);
+		assertSame(g, g.freeze());
+		assertSame(g, g.freeze());
+		try {
+			g.defineRule("foo", "bar");
+			fail("redefined rule in frozen grammar");
+		} catch (GrammarException e) {
+		}
+		try {
+			g.defineCondition("short", c);
+			fail("redefined condition in frozen grammar");
+		} catch (GrammarException e) {
+		}
+		final AtomicInteger agreed = new AtomicInteger();
+		Thread[] threads = new Thread[8];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int j = 0; j < MULTIPLIER; j++) {
+						if (expected.equals(matches(g, s)))
+							agreed.incrementAndGet();
+					}
+				}
+			});
+			threads[i].start();
+		}
+		for (Thread t : threads)
+			t.join();
+		assertEquals(threads.length * MULTIPLIER, agreed.get());
+	}
+
+	private static String matches(Grammar g, String s) {
+		StringBuilder b = new StringBuilder();
+		Matcher m = g.find(s, new Options().study(true));
+		Match n;
+		while ((n = m.match()) != null)
+			b.append(n.group()).append('|');
+		return b.toString();
+	}
+
+	@Test
+	public void concurrentCache() throws InterruptedException {
+		final int size = 3 * ConcurrentMatchCache.PAGE_SIZE;
+		final ConcurrentMatchCache cache = new ConcurrentMatchCache(size);
+		assertTrue(cache.isEmpty());
+		assertNull(cache.get(size));
+		final Rule r = new LiteralRule(new Label(Label.Type.explicit, "a"), "a");
+		Thread[] threads = new Thread[4];
+		for (int i = 0; i < threads.length; i++) {
+			final int start = i;
+			threads[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int j = start; j <= size; j += 3)
+						cache.put(j, j % 2 == 0 ? new CachedMatch(new Match(r, j,
+								j + 1)) : CachedMatch.MISMATCH);
+				}
+			});
+			threads[i].start();
+		}
+		for (Thread t : threads)
+			t.join();
+		assertEquals(size + 1, cache.size());
+		for (int j = 0; j <= size; j++) {
+			CachedMatch cm = cache.get(j);
+			if (j % 2 == 0)
+				assertEquals(j, cm.m.start());
+			else
+				assertSame(CachedMatch.MISMATCH, cm);
+		}
+		assertSame(CachedMatch.MISMATCH, cache.remove(1));
+		assertFalse(cache.containsKey(1));
+		assertEquals(Integer.valueOf(0), cache.keySet().iterator().next());
+		cache.clear();
+		assertTrue(cache.isEmpty());
+	}
+
+	@Test
+	public void batch() {
+		Random r = new Random(7);
+		List<String> inputs = new ArrayList<String>();
+		for (int i = 0; i < 200; i++) {
+			StringBuilder b = new StringBuilder();
+			for (int j = r.nextInt(8); j >= 0; j--)
+				b.append(testPhrases[r.nextInt(testPhrases.length)]);
+			inputs.add(b.toString());
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try {
+			for (boolean study : new boolean[] { true, false }) {
+				Options opt = new Options().study(study).parallelism(3);
+				List<List<Match>> found = g.findAll(inputs, opt, executor);
+				assertEquals(inputs.size(), found.size());
+				for (int i = 0; i < inputs.size(); i++)
+					assertEquals(groups(g.find(inputs.get(i), opt)),
+							groups(found.get(i)));
+				boolean[] seen = new boolean[inputs.size()];
+				for (Iterator<BatchResult> i = g.findAll(inputs, opt, executor,
+						false); i.hasNext();) {
+					BatchResult br = i.next();
+					assertFalse(seen[br.index()]);
+					seen[br.index()] = true;
+					assertSame(inputs.get(br.index()), br.input());
+					assertEquals(groups(found.get(br.index())),
+							groups(br.matches()));
+				}
+				for (boolean b : seen)
+					assertTrue(b);
+			}
+			Iterator<BatchResult> i = g.findAll(
+					java.util.Arrays.asList("foo bar", testPhrases[0]),
+					new Options().start(10), executor, true);
+			assertTrue(i.next().error() instanceof GrammarException);
+			assertEquals("foo    bar|", groups(i.next().matches()));
+			assertFalse(i.hasNext());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private static String groups(Matcher m) {
+		List<Match> list = new ArrayList<Match>();
+		Match n;
+		while ((n = m.match()) != null)
+			list.add(n);
+		return groups(list);
+	}
+
+	private static String groups(List<Match> matches) {
+		StringBuilder b = new StringBuilder();
+		for (Match n : matches)
+			b.append(n.group()).append('|');
+		return b.toString();
+	}
 }
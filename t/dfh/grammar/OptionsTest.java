@@ -1,5 +1,7 @@
 package dfh.grammar;
 
+import static org.junit.Assert.*;
+
 import org.junit.Test;
 
 /**
@@ -25,4 +27,146 @@ public class OptionsTest {
 		g.find("a microscopic bar", opt).match();
 		g.find("a big bar", opt).match();
 	}
+
+	@Test
+	public void unsynchronized() {
+		Grammar g = new Grammar("rule = 'bar' | 'ba'");
+		String s = "a bar and a bat";
+		for (boolean overlap : new boolean[] { false, true }) {
+			Options opt = new Options().allowOverlap(overlap);
+			Options unsynchronized = new Options(opt).synchronize(false);
+			assertFalse(unsynchronized.synchronize());
+			assertEquals(matches(g.find(s, opt)), matches(g.find(s,
+					unsynchronized)));
+			assertEquals(matches(g.lookingAt("bar", opt)), matches(g.lookingAt(
+					"bar", unsynchronized)));
+			assertEquals(matches(g.matches("ba", opt)), matches(g.matches("ba",
+					unsynchronized)));
+		}
+	}
+
+	@Test
+	public void yieldHook() {
+		Grammar g = new Grammar(new String[] { "rule = <a>+ 'c'",
+				"a = 'a' | 'b'" });
+		String s = "ababc ab ababababc";
+		final int[] calls = { 0 };
+		Runnable hook = new Runnable() {
+			@Override
+			public void run() {
+				calls[0]++;
+			}
+		};
+		Options opt = new Options().study(false);
+		assertSame(Options.YIELD_HOOK, opt.yieldHook());
+		String expected = matches(g.find(s, opt));
+		opt.yieldHook(hook).yieldQuantum(1);
+		assertEquals(expected, matches(g.find(s, opt)));
+		int steps = calls[0];
+		assertTrue(steps > 0);
+		calls[0] = 0;
+		opt.yieldQuantum(4);
+		assertEquals(expected, matches(g.find(s, opt)));
+		assertEquals(steps / 4, calls[0]);
+		calls[0] = 0;
+		opt.yieldQuantum(0);
+		assertEquals(expected, matches(g.find(s, opt)));
+		assertEquals(0, calls[0]);
+		Options.YIELD_HOOK.run();
+	}
+
+	@Test
+	public void maxSteps() {
+		Grammar g = new Grammar("rule = [ 'a' | 'aa' ]+ [ 'b' | 'c' ]");
+		Options opt = new Options().study(false).autoIndex(false)
+				.keepRightmost(true).maxSteps(1000);
+		assertEquals(1000, opt.maxSteps());
+		assertEquals("0aaab ", matches(g.find("aaab", opt)));
+		try {
+			g.matches(repeat('a', 30), opt).match();
+			fail("exponential match not aborted");
+		} catch (MatchAbortedException e) {
+			assertEquals(1001, e.steps());
+			assertEquals(30, e.rightmostMatch().end());
+		}
+	}
+
+	@Test
+	public void deadline() {
+		Grammar g = new Grammar("rule = [ 'a' | 'aa' ]+ [ 'b' | 'c' ]");
+		Options opt = new Options().study(false).autoIndex(false)
+				.deadline(java.time.Duration.ofMillis(20));
+		assertEquals("0aaab ", matches(g.find("aaab", opt)));
+		try {
+			g.matches(repeat('a', 60), opt).match();
+			fail("exponential match not aborted");
+		} catch (MatchAbortedException e) {
+			assertTrue(e.steps() > 0);
+			assertNull(e.rightmostMatch());
+		}
+	}
+
+	@Test
+	public void cancellation() {
+		Grammar g = new Grammar("rule = [ 'a' | 'aa' ]+ [ 'b' | 'c' ]");
+		final boolean[] cancelled = { false };
+		Options opt = new Options().study(false).autoIndex(false)
+				.cancellation(new java.util.function.BooleanSupplier() {
+					@Override
+					public boolean getAsBoolean() {
+						return cancelled[0];
+					}
+				});
+		assertEquals("0aaab ", matches(g.find("aaab", opt)));
+		cancelled[0] = true;
+		try {
+			g.matches(repeat('a', 60), opt).match();
+			fail("cancelled match not stopped");
+		} catch (MatchCancelledException e) {
+			assertTrue(e.steps() > 0);
+		}
+		try {
+			g.find(repeat('a', 1000), new Options(opt).parallelism(2)
+					.chunkSize(100)).match();
+			fail("cancelled parallel match not stopped");
+		} catch (MatchCancelledException e) {
+		}
+	}
+
+	@Test
+	public void interruptible() {
+		Grammar g = new Grammar("rule = [ 'a' | 'aa' ]+ [ 'b' | 'c' ]");
+		Options opt = new Options().study(false).autoIndex(false);
+		assertTrue(opt.interruptible());
+		Thread.currentThread().interrupt();
+		try {
+			g.matches(repeat('a', 60), opt).match();
+			fail("interrupted match not stopped");
+		} catch (MatchCancelledException e) {
+			assertTrue(Thread.currentThread().isInterrupted());
+		} finally {
+			Thread.interrupted();
+		}
+		Thread.currentThread().interrupt();
+		try {
+			assertEquals("0aaaaaaaaaab ", matches(g.find("aaaaaaaaaab",
+					opt.interruptible(false))));
+		} finally {
+			Thread.interrupted();
+		}
+	}
+
+	private static String repeat(char c, int n) {
+		StringBuilder b = new StringBuilder(n);
+		for (int i = 0; i < n; i++)
+			b.append(c);
+		return b.toString();
+	}
+
+	private static String matches(Matcher m) {
+		StringBuilder b = new StringBuilder();
+		for (Match n : m.all())
+			b.append(n.start()).append(n.group()).append(' ');
+		return b.toString();
+	}
 }
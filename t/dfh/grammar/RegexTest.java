@@ -1,5 +1,6 @@
 package dfh.grammar;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 
@@ -60,4 +61,22 @@ public class RegexTest {
 		Match n = m.match();
 		assertNotNull("found empty joe", n);
 	}
+
+	@Test
+	public void forwardAndReversed() {
+		String[] rules = {
+		//
+		"<ROOT> = !- [ /\\d+/r '.' ] /\\d+/r [ '.' /\\d+/r ]?",//
+		};
+		Grammar g = new Grammar(rules);
+		for (Options opt : new Options[] { new Options(),
+				new Options().study(false) }) {
+			Matcher m = g.find("1.25 3 4.5.6", opt);
+			StringBuilder b = new StringBuilder();
+			Match n;
+			while ((n = m.match()) != null)
+				b.append('[').append(n.group()).append(']');
+			assertEquals("[1.25][3][4.5]", b.toString());
+		}
+	}
 }
@@ -139,4 +139,41 @@ public class UplevelBackreferenceTest {
 			count++;
 		assertTrue("found repetition", count == 3);
 	}
+
+	@Test
+	public void sequenceInGroup() {
+		Grammar g = new Grammar(
+				new String[] { "ROOT = /[ab]/ 'foo' [ 'x' 1^ | 'c' ]" });
+		int count = 0;
+		Matcher m = g.find("afooxa bfooxa afooc bfooxb");
+		while (m.match() != null)
+			count++;
+		assertTrue("found sequence", count == 3);
+	}
+
+	@Test
+	public void conditional() {
+		Grammar g = new Grammar(new String[] {
+				"ROOT = /[ab]/ 'foo' [ 'x' 1^ | 'c' ] (long)", });
+		g.defineCondition("long", new Condition() {
+			@Override
+			public boolean passes(Match n, Matcher m, CharSequence s) {
+				return n.length() > 5;
+			}
+		});
+		int count = 0;
+		Matcher m = g.find("afooxa bfooxa afooc bfooxb");
+		while (m.match() != null)
+			count++;
+		assertTrue("found sequence", count == 2);
+	}
+
+	@Test
+	public void recursive() {
+		Grammar g = new Grammar(new String[] {
+				"ROOT = /[ab]/ '(' [ <ROOT> 1^ | 'c' ] ')'", });
+		// the back reference belongs to the outer ROOT
+		assertTrue(g.matches("a(b(c)a)").match() != null);
+		assertTrue(g.matches("a(b(c)b)").match() == null);
+	}
 }
@@ -0,0 +1,170 @@
+package dfh.grammar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+/**
+ * Makes sure minimum and maximum match widths are calculated conservatively
+ * and that pruning on them doesn't change what matches.
+ * <p>
+ *
+ * @author David F. Houghton - Oct 19, 2026
+ *
+ */
+public class WidthTest {
+
+	private static void regex(String re, int min, int max) {
+		RegexWidth w = new RegexWidth(Pattern.compile(re));
+		assertEquals("minimum width of /" + re + "/", min, w.min);
+		assertEquals("maximum width of /" + re + "/", max, w.max);
+	}
+
+	@Test
+	public void regexWidths() {
+		regex("abc", 3, 3);
+		regex("a|bc", 1, 2);
+		regex("\\w", 1, 1);
+		regex("\\W", 1, 2);
+		regex("[a-z]", 1, 1);
+		regex("[^a-z]", 1, 2);
+		regex(".", 1, 2);
+		regex("\\b", 0, 0);
+		regex("(?=a)b", 1, 1);
+		regex("(?:ab){2,3}", 4, 6);
+		regex("a?b*+", 0, Rule.UNBOUNDED);
+		regex("\\d{3}-\\d{4}", 8, 8);
+		regex("(?<year>\\d{4})", 4, 4);
+		regex("(?i)cat", 3, 3);
+		regex("\\Qa+b\\E", 3, 3);
+		regex("\\x{1F600}", 2, 2);
+		regex("\\uD83D\\uDE00", 2, 2);
+		regex("a\\uD83D\\uDE00?", 1, 3);
+		regex("\\u0041\\u0042?", 1, 2);
+		regex("[\\uD83D\\uDE00]", 1, 2);
+		regex("[\\u0041-\\u005A]", 1, 1);
+		// things we don't analyze
+		regex("(a)\\1", 0, Rule.UNBOUNDED);
+		regex("(?x) a b ", 0, Rule.UNBOUNDED);
+	}
+
+	@Test
+	public void ruleWidths() {
+		String[] rules = {
+				//
+				"ROOT = <a> <b>? <c>+",//
+				"a = 'foo' | 'quux'",//
+				"b = /\\d{2}/",//
+				"c = ~ 'x' /\\w/",//
+		};
+		Grammar g = new Grammar(rules);
+		g.find("");
+		assertEquals(4, g.root.minWidth);
+		assertEquals(Rule.UNBOUNDED, g.root.maxWidth);
+		Rule a = null;
+		for (Rule r : g.root.subRules(true)) {
+			if (r.label().id.equals("a"))
+				a = r;
+		}
+		assertEquals(3, a.minWidth);
+		assertEquals(4, a.maxWidth);
+	}
+
+	@Test
+	public void recursiveWidth() {
+		String[] rules = {
+				//
+				"ROOT = '(' <ROOT> ')' | 'x'",//
+		};
+		Grammar g = new Grammar(rules);
+		assertNotNull(g.matches("((x))").match());
+		assertEquals(1, g.root.minWidth);
+		assertEquals(Rule.UNBOUNDED, g.root.maxWidth);
+	}
+
+	@Test
+	public void findNearEnd() {
+		String[] rules = {
+				//
+				"ROOT = /\\w+/ '@' /\\w+/",//
+		};
+		Grammar g = new Grammar(rules);
+		Matcher m = g.find("a@b c@", new Options().study(false));
+		Match n = m.match();
+		assertNotNull(n);
+		assertEquals("a@b", n.group());
+		assertNull(m.match());
+	}
+
+	@Test
+	public void longestStillLongest() {
+		String[] rules = {
+				//
+				"ROOT = 'a' | 'ab' | 'a' /b/",//
+		};
+		Grammar g = new Grammar(rules);
+		Matcher m = g.find("abab");
+		assertEquals("ab", m.match().group());
+		assertEquals("ab", m.match().group());
+		assertNull(m.match());
+		m = g.find("abab", new Options().allowOverlap(true));
+		int count = 0;
+		while (m.match() != null)
+			count++;
+		assertEquals("ties are all returned when overlap is allowed", 4, count);
+	}
+
+	@Test
+	public void matchesAnchored() {
+		String[] rules = {
+				//
+				"ROOT = <s>+ | <s> 'b'{1,2} | <s>? 'ab'",//
+				"s = 'a' | 'ab' | 'a' 'b' | 'b'{2}",//
+		};
+		Grammar g = new Grammar(rules);
+		Random r = new Random(11);
+		for (int i = 0; i < 50; i++) {
+			StringBuilder b = new StringBuilder();
+			for (int j = 0, lim = r.nextInt(7); j < lim; j++)
+				b.append(r.nextBoolean() ? 'a' : 'b');
+			String s = b.toString();
+			List<String> expected = new ArrayList<String>();
+			Matcher m = g.lookingAt(s, new Options().longestMatch(false)
+					.allowOverlap(true));
+			Match n;
+			while ((n = m.match()) != null) {
+				if (n.end() == s.length())
+					expected.add(n.toString());
+			}
+			List<String> found = new ArrayList<String>();
+			m = g.matches(s, new Options().allowOverlap(true));
+			while ((n = m.match()) != null)
+				found.add(n.toString());
+			assertEquals(s, expected, found);
+		}
+	}
+
+	@Test
+	public void barrierRespected() {
+		String[] rules = {
+				//
+				"ROOT = <a> <b>",//
+				"a = 'x' | 'xy'",//
+				"b = 'y' :: 'zz'",//
+		};
+		Grammar g = new Grammar(rules);
+		// pruning 'x' because <b> needs three characters would let 'xy'
+		// match first, but the barrier in <b> should stop all matching
+		assertFalse(g.lookingAt("xyz").mightHaveNext());
+		assertTrue(g.lookingAt("xyzz").mightHaveNext());
+	}
+}